@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/**
+ * Measures how the throughput of an AccountLedger changes with the number of
+ * accounts and with the skew of the accounts couriers visit. For every number
+ * of accounts and every skew, a number of AccountCouriers, each on its own
+ * thread, make a mix of deposits, withdrawals and transfers.
+ *
+ * Throughput is the median over a number of trials, after one warm-up trial,
+ * each on a fresh ledger. After every trial the money in the ledger is checked
+ * against the money the couriers brought in and took out. A ledger that lost
+ * money is reported as FAILED and makes the benchmark exit with status 1.
+ */
+public class AccountBenchmark {
+	private static final String USAGE =
+			"Usage: java AccountBenchmark [options]\n" +
+			"  --accounts <a,b,..>   Numbers of accounts (default 16,1024,65536,1048576)\n" +
+			"  --skews <a,b,..>      Zipf skews of the accounts visited, 0 is uniform (default 0,0.8,1,1.2)\n" +
+			"  --threads <n>         Courier threads (default all cores)\n" +
+			"  --operations <n>      Operations per courier in each trial (default 1000000)\n" +
+			"  --stripes <n>         Locks guarding the accounts (default 64 per core)\n" +
+			"  --mix <d,w>           Percentages of deposits and withdrawals, the rest are transfers (default 40,20)\n" +
+			"  --trials <n>          Measured trials per setting (default 3)";
+
+	/** The money in every account to start with */
+	private static final long INITIAL_BALANCE = 1000;
+
+	public static void main(String[] args) {
+		String[] accounts = {"16", "1024", "65536", "1048576"};
+		String[] skews = {"0", "0.8", "1", "1.2"};
+		int threads = Runtime.getRuntime().availableProcessors();
+		int operations = 1000000;
+		int stripes = 64*Runtime.getRuntime().availableProcessors();
+		int depositShare = 40;
+		int withdrawalShare = 20;
+		int trials = 3;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				String flag = args[i];
+				if(flag.equals("--help") || flag.equals("-h")) {
+					exitWithUsage(null);
+				}
+				if(i+1 == args.length) {
+					exitWithUsage("Missing value for "+flag);
+				}
+				String value = args[++i];
+				switch(flag) {
+					case "--accounts": accounts = value.split(","); break;
+					case "--skews": skews = value.split(","); break;
+					case "--threads": threads = Integer.parseInt(value); break;
+					case "--operations": operations = Integer.parseInt(value); break;
+					case "--stripes": stripes = Integer.parseInt(value); break;
+					case "--mix":
+						String[] shares = value.split(",");
+						if(shares.length != 2) {
+							exitWithUsage("The mix needs two percentages.");
+						}
+						depositShare = Integer.parseInt(shares[0].trim());
+						withdrawalShare = Integer.parseInt(shares[1].trim());
+						break;
+					case "--trials": trials = Integer.parseInt(value); break;
+					default: exitWithUsage("Unknown option "+flag);
+				}
+			}
+			if(threads < 1 || operations < 1 || stripes < 1 || trials < 1) {
+				exitWithUsage("All values must be at least 1.");
+			}
+			if(depositShare < 0 || withdrawalShare < 0 || depositShare+withdrawalShare > 100) {
+				exitWithUsage("The percentages of deposits and withdrawals must add up to at most 100.");
+			}
+		} catch(IllegalArgumentException iae) {
+			exitWithUsage(iae.getMessage());
+		}
+
+		System.out.println(threads+" couriers, "+operations+" operations each, "+depositShare+"% deposits, "+
+				withdrawalShare+"% withdrawals, "+(100-depositShare-withdrawalShare)+"% transfers, "+
+				stripes+" stripes");
+		System.out.println(String.format("%10s %-10s %9s %15s %15s %15s %8s  %s",
+				"accounts", "skew", "hottest", "operations/s", "min/s", "max/s", "refused", "check"));
+		boolean failed = false;
+		for(String a : accounts) {
+			for(String s : skews) {
+				AccountSelector selector = null;
+				int nofAccounts = 0;
+				try {
+					nofAccounts = Integer.parseInt(a.trim());
+					selector = new AccountSelector(nofAccounts, Double.parseDouble(s.trim()));
+				} catch(IllegalArgumentException iae) {
+					exitWithUsage(iae.getMessage());
+				}
+				failed |= !measure(nofAccounts, selector, threads, operations, stripes, depositShare,
+						withdrawalShare, trials);
+			}
+		}
+		if(failed) {
+			System.out.println("The ledger lost money.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs the trials of one number of accounts and skew, and prints a line of results.
+	 * @return	Whether the ledger kept all the money in every trial.
+	 */
+	private static boolean measure(int nofAccounts, AccountSelector selector, int threads, int operations,
+			int stripes, int depositShare, int withdrawalShare, int trials) {
+		long discrepancy = 0;
+		long refused = 0;
+		double[] throughputs = new double[trials];
+		// The first trial warms up
+		for(int i = -1; i < trials; i++) {
+			AccountLedger ledger = new AccountLedger(nofAccounts, stripes, INITIAL_BALANCE);
+			AccountCourier[] couriers = new AccountCourier[threads];
+			Thread[] courierThreads = new Thread[threads];
+			for(int t = 0; t < threads; t++) {
+				couriers[t] = new AccountCourier(ledger, selector, operations, depositShare, withdrawalShare);
+				courierThreads[t] = new Thread(couriers[t]);
+			}
+			long start = System.nanoTime();
+			for(Thread thread : courierThreads) {
+				thread.start();
+			}
+			for(Thread thread : courierThreads) {
+				try {
+					thread.join();
+				} catch(InterruptedException e) {
+					// This should not happen.
+					e.printStackTrace();
+				}
+			}
+			long elapsed = System.nanoTime()-start;
+
+			long expected = nofAccounts*INITIAL_BALANCE;
+			long nofRefused = 0;
+			for(AccountCourier courier : couriers) {
+				expected += courier.getMoneyDeposited() - courier.getMoneyWithdrawn();
+				nofRefused += courier.getNofFailedOperations();
+			}
+			if(ledger.getTotal() != expected) {
+				discrepancy = expected - ledger.getTotal();
+			}
+			if(i >= 0) {
+				throughputs[i] = (double)threads*operations*1e9/Math.max(1, elapsed);
+				refused += nofRefused;
+			}
+		}
+		Arrays.sort(throughputs);
+
+		System.out.println(String.format("%10d %-10s %8.2f%% %,15.0f %,15.0f %,15.0f %7.2f%%  %s",
+				nofAccounts, selector, 100*selector.getHottestShare(), throughputs[trials/2], throughputs[0],
+				throughputs[trials-1], 100.0*refused/((long)trials*threads*operations),
+				discrepancy == 0 ? "ok" : "FAILED, discrepancy "+discrepancy));
+		return discrepancy == 0;
+	}
+
+	private static void exitWithUsage(String message) {
+		if(message != null) {
+			System.out.println(message);
+		}
+		System.out.println(USAGE);
+		System.exit(message == null ? 0 : 1);
+	}
+}
@@ -0,0 +1,87 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A courier working with the accounts of an AccountLedger: it deposits in,
+ * withdraws from and transfers between accounts picked by an AccountSelector,
+ * each time moving between 50 and 149 dollars. Like the Courier, it keeps its
+ * own records of the money it brought in and took out, so the bank's books can
+ * be checked afterwards.
+ *
+ * The accounts are picked when the courier is created, and used over and over,
+ * so a benchmark does not measure the cost of picking them from a skewed
+ * distribution, which can be higher than the cost of the operation itself.
+ */
+public class AccountCourier implements Runnable {
+	/** The number of accounts picked in advance, a power of two */
+	private static final int NOF_PICKS = 1 << 16;
+
+	private final AccountLedger ledger;
+	/** The accounts to visit, in order, starting over at the end */
+	private final int[] picks;
+	private final int nofOperations;
+	/** Percentages of deposits and withdrawals, the rest are transfers */
+	private final int depositShare;
+	private final int withdrawalShare;
+
+	// Only written by the courier's own thread
+	private long moneyDeposited;
+	private long moneyWithdrawn;
+	private long nofFailedOperations;
+
+	/**
+	 * @param depositShare		The percentage of operations that are deposits.
+	 * @param withdrawalShare	The percentage that are withdrawals. The rest are transfers.
+	 */
+	public AccountCourier(AccountLedger ledger, AccountSelector selector, int nofOperations,
+			int depositShare, int withdrawalShare) {
+		if(depositShare < 0 || withdrawalShare < 0 || depositShare+withdrawalShare > 100) {
+			throw new IllegalArgumentException("The shares of deposits and withdrawals must add up to at most 100");
+		}
+		this.ledger = ledger;
+		picks = new int[NOF_PICKS];
+		for(int i = 0; i < NOF_PICKS; i++) {
+			picks[i] = selector.next();
+		}
+		this.nofOperations = nofOperations;
+		this.depositShare = depositShare;
+		this.withdrawalShare = withdrawalShare;
+	}
+
+	@Override
+	public void run() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		// Start somewhere else in the picks for every courier
+		int next = random.nextInt(NOF_PICKS);
+		for(int i = 0; i < nofOperations; i++) {
+			int kind = random.nextInt(100);
+			int sum = random.nextInt(50, 150);
+			if(kind < depositShare) {
+				ledger.deposit(picks[next++ & (NOF_PICKS-1)], sum);
+				moneyDeposited += sum;
+			} else if(kind < depositShare+withdrawalShare) {
+				if(ledger.withdraw(picks[next++ & (NOF_PICKS-1)], sum)) {
+					moneyWithdrawn += sum;
+				} else {
+					nofFailedOperations++;
+				}
+			} else if(!ledger.transfer(picks[next++ & (NOF_PICKS-1)], picks[next++ & (NOF_PICKS-1)], sum)) {
+				nofFailedOperations++;
+			}
+		}
+	}
+
+	public long getMoneyDeposited() {
+		return moneyDeposited;
+	}
+
+	public long getMoneyWithdrawn() {
+		return moneyWithdrawn;
+	}
+
+	/**
+	 * Returns the number of withdrawals and transfers refused for lack of money.
+	 */
+	public long getNofFailedOperations() {
+		return nofFailedOperations;
+	}
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ledger of many accounts, each with its own balance, for a bank that has
+ * outgrown its single night safe and vault. Money can be deposited in an
+ * account, withdrawn from it, and transferred between two accounts.
+ *
+ * The balances are kept in one long array, and guarded by a fixed number of
+ * locks, each lock guarding a stripe of accounts. Accounts are assigned to
+ * stripes in groups of ACCOUNTS_PER_GROUP neighbours, 64 bytes, the size of a
+ * cache line. The array is not aligned to cache lines, so a group may span two
+ * lines and share each end with the neighbouring group, of another stripe.
+ * Threads holding different locks can still write to the same cache line, but
+ * only at the edges of the groups, rather than for most accounts as with
+ * neighbouring accounts on different stripes.
+ *
+ * A transfer between accounts of two stripes takes both locks, always the
+ * lock of the lower stripe first. As every thread takes locks in the same
+ * order, no two transfers can wait for each other, and there is no deadlock.
+ */
+public class AccountLedger {
+	/** Neighbouring accounts sharing a cache line, and so a lock */
+	private static final int ACCOUNTS_PER_GROUP = 8;
+
+	private final long[] balances;
+	private final ReentrantLock[] locks;
+	private final int stripeMask;
+
+	/**
+	 * Creates a ledger of accounts all holding the same initial balance.
+	 * @param nofAccounts		The number of accounts, at least 1.
+	 * @param nofStripes		The number of locks, rounded up to a power of two.
+	 * @param initialBalance	The money in every account to start with, not negative.
+	 */
+	public AccountLedger(int nofAccounts, int nofStripes, long initialBalance) {
+		if(nofAccounts < 1 || nofStripes < 1 || initialBalance < 0) {
+			throw new IllegalArgumentException("Need at least one account and one stripe, and a balance not negative");
+		}
+		balances = new long[nofAccounts];
+		Arrays.fill(balances, initialBalance);
+		int size = 1;
+		while(size < nofStripes) {
+			size *= 2;
+		}
+		locks = new ReentrantLock[size];
+		for(int i = 0; i < size; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		stripeMask = size-1;
+	}
+
+	/**
+	 * Deposits money in an account.
+	 * @param amount	The amount to deposit, not negative.
+	 */
+	public void deposit(int account, long amount) {
+		checkAmount(amount);
+		ReentrantLock lock = locks[stripeOf(account)];
+		lock.lock();
+		try {
+			balances[account] += amount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Deposits a batch of amounts, each in its own account, with the same result
+	 * as depositing them one by one. None is deposited if any amount is negative.
+	 * @param accounts	The account of each amount.
+	 * @param amounts	The amounts to deposit, not negative.
+	 * @param count		The number of amounts to deposit, from the start of the arrays.
+	 */
+	public void depositBatch(int[] accounts, int[] amounts, int count) {
+		Ledger.total(amounts, count);
+		for(int i = 0; i < count; i++) {
+			deposit(accounts[i], amounts[i]);
+		}
+	}
+
+	/**
+	 * Withdraws money from an account, if it holds enough.
+	 * @param amount	The amount to withdraw, not negative.
+	 * @return	Whether the money was withdrawn.
+	 */
+	public boolean withdraw(int account, long amount) {
+		checkAmount(amount);
+		ReentrantLock lock = locks[stripeOf(account)];
+		lock.lock();
+		try {
+			if(balances[account] < amount) {
+				return false;
+			}
+			balances[account] -= amount;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Moves money from one account to another, if the first holds enough. The
+	 * locks of both stripes are taken in stripe order, so transfers can not
+	 * deadlock, whichever accounts they go between.
+	 * @param amount	The amount to transfer, not negative.
+	 * @return	Whether the money was transferred.
+	 */
+	public boolean transfer(int from, int to, long amount) {
+		checkAmount(amount);
+		int fromStripe = stripeOf(from);
+		int toStripe = stripeOf(to);
+		ReentrantLock first = locks[Math.min(fromStripe, toStripe)];
+		ReentrantLock second = locks[Math.max(fromStripe, toStripe)];
+		first.lock();
+		try {
+			if(second != first) {
+				second.lock();
+			}
+			try {
+				if(balances[from] < amount) {
+					return false;
+				}
+				balances[from] -= amount;
+				balances[to] += amount;
+				return true;
+			} finally {
+				if(second != first) {
+					second.unlock();
+				}
+			}
+		} finally {
+			first.unlock();
+		}
+	}
+
+	public long getBalance(int account) {
+		ReentrantLock lock = locks[stripeOf(account)];
+		lock.lock();
+		try {
+			return balances[account];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the money in all accounts. Takes every lock, in stripe order, so
+	 * the total is exact, but all deposits wait while it is counted.
+	 */
+	public long getTotal() {
+		for(ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			long total = 0;
+			for(long balance : balances) {
+				total += balance;
+			}
+			return total;
+		} finally {
+			for(int i = locks.length-1; i >= 0; i--) {
+				locks[i].unlock();
+			}
+		}
+	}
+
+	public int getNofAccounts() {
+		return balances.length;
+	}
+
+	public int getNofStripes() {
+		return locks.length;
+	}
+
+	private int stripeOf(int account) {
+		return (account / ACCOUNTS_PER_GROUP) & stripeMask;
+	}
+
+	private static void checkAmount(long amount) {
+		if(amount < 0) {
+			throw new IllegalArgumentException("Can not move a negative amount: "+amount);
+		}
+	}
+}
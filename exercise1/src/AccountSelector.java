@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the accounts couriers visit. With a skew of 0 every account is equally
+ * likely. With a positive skew the accounts follow a Zipf distribution: the
+ * account of rank r (from 0) is picked with a chance proportional to
+ * 1/(r+1)^skew, so a few accounts get most of the visits. A skew of about 1 is
+ * a typical hot spot. The ranks are scattered over the account numbers, so the
+ * hottest accounts are not neighbours, which would share a lock in the ledger.
+ *
+ * The cumulative distribution is computed once, and every pick is a binary
+ * search in it, so picking takes no more than a few hundred nanoseconds even
+ * for millions of accounts. A selector can be shared by many threads.
+ */
+public class AccountSelector {
+	/** A prime, so multiplying ranks by it modulo the number of accounts visits every account once */
+	private static final long SCATTER = 2147483647L;
+
+	private final int nofAccounts;
+	private final double skew;
+	/** The chance of picking a rank up to and including i, or null for uniform picks */
+	private final double[] cumulative;
+
+	/**
+	 * @param nofAccounts	The number of accounts, at least 1.
+	 * @param skew			The Zipf exponent, or 0 for uniform picks.
+	 */
+	public AccountSelector(int nofAccounts, double skew) {
+		if(nofAccounts < 1 || skew < 0) {
+			throw new IllegalArgumentException("Need at least one account and a skew not negative");
+		}
+		this.nofAccounts = nofAccounts;
+		this.skew = skew;
+		if(skew == 0) {
+			cumulative = null;
+		} else {
+			cumulative = new double[nofAccounts];
+			double sum = 0;
+			for(int i = 0; i < nofAccounts; i++) {
+				sum += Math.pow(i+1, -skew);
+				cumulative[i] = sum;
+			}
+			for(int i = 0; i < nofAccounts; i++) {
+				cumulative[i] /= sum;
+			}
+		}
+	}
+
+	/**
+	 * Returns a random account.
+	 */
+	public int next() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if(cumulative == null) {
+			return random.nextInt(nofAccounts);
+		}
+		int i = Arrays.binarySearch(cumulative, random.nextDouble());
+		// Not found gives -(insertion point)-1, the first rank with a larger chance
+		int rank = Math.min(i < 0 ? -i-1 : i, nofAccounts-1);
+		return (int)(rank*SCATTER % nofAccounts);
+	}
+
+	/**
+	 * Returns the chance that a pick is the most visited account.
+	 */
+	public double getHottestShare() {
+		return cumulative == null ? 1.0/nofAccounts : cumulative[0];
+	}
+
+	public double getSkew() {
+		return skew;
+	}
+
+	@Override
+	public String toString() {
+		return skew == 0 ? "uniform" : "zipf "+skew;
+	}
+}
@@ -0,0 +1,51 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ledger whose night safe is a LongAdder, so deposits spread over
+ * internal cells and do not contend. The night safe is only summed after a
+ * deposit, and when the sum is over the threshold the depositor takes a lock
+ * and moves exactly the amount it summed to the vault. Money is never lost,
+ * but the threshold is approximate: with deposits in flight the night safe may
+ * briefly hold more than the threshold.
+ */
+public class AdderLedger implements Ledger {
+	private final LongAdder nightSafe = new LongAdder();
+	private final ReentrantLock transferLock = new ReentrantLock();
+	/** Only written while holding the transfer lock */
+	private volatile long vaultAmount;
+
+	/**
+	 * Deposits money in the night safe, moving it to the vault if the night
+	 * safe then holds more than the threshold.
+	 * @param amount	The amount to deposit, not negative.
+	 */
+	public void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		nightSafe.add(amount);
+		if(nightSafe.sum() > TRANSFER_THRESHOLD && transferLock.tryLock()) {
+			try {
+				long amountInSafe = nightSafe.sum();
+				if(amountInSafe > TRANSFER_THRESHOLD) {
+					// Transfer the money in the night safe to the vault:
+					vaultAmount += amountInSafe;
+					nightSafe.add(-amountInSafe);
+				}
+			} finally {
+				transferLock.unlock();
+			}
+		}
+	}
+
+	public long getNightSafeAmount() {
+		return nightSafe.sum();
+	}
+
+	public long getVaultAmount() {
+		return vaultAmount;
+	}
+
+	public String getName() {
+		return "adder";
+	}
+}
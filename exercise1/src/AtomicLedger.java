@@ -0,0 +1,61 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ledger kept in a single AtomicLong, updated with a compare-and-set loop.
+ * The word holds the money in the night safe in its low bits and the total
+ * amount ever deposited in its high bits, so the vault is their difference
+ * and a deposit with its transfer to the vault is one atomic step.
+ * All couriers compete for the same word.
+ */
+public class AtomicLedger implements Ledger {
+	/** The number of low bits holding the night safe amount, which never exceeds the threshold */
+	private static final int SAFE_BITS = 8;
+	private static final long SAFE_MASK = (1L << SAFE_BITS) - 1;
+
+	private final AtomicLong ledger = new AtomicLong();
+
+	public void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		while(true) {
+			long old = ledger.get();
+			long safe = (old & SAFE_MASK) + amount;
+			if(safe > TRANSFER_THRESHOLD) {
+				// Transfer the money in the night safe to the vault:
+				safe = 0;
+			}
+			long deposited = (old >>> SAFE_BITS) + amount;
+			if(ledger.compareAndSet(old, deposited << SAFE_BITS | safe)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Replays the batch against the night safe and applies the result with a
+	 * single compare-and-set, replaying again if another deposit got in between.
+	 */
+	public void depositBatch(int[] amounts, int count) {
+		long total = Ledger.total(amounts, count);
+		while(true) {
+			long old = ledger.get();
+			long safe = Ledger.nightSafeAfter(old & SAFE_MASK, amounts, count);
+			long deposited = (old >>> SAFE_BITS) + total;
+			if(ledger.compareAndSet(old, deposited << SAFE_BITS | safe)) {
+				return;
+			}
+		}
+	}
+
+	public long getNightSafeAmount() {
+		return ledger.get() & SAFE_MASK;
+	}
+
+	public long getVaultAmount() {
+		long word = ledger.get();
+		return (word >>> SAFE_BITS) - (word & SAFE_MASK);
+	}
+
+	public String getName() {
+		return "atomic";
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * The money in the bank at one moment, read while couriers may be depositing:
+ * the night safe, the vault, and the money the couriers claim to have handed
+ * in, by their own records. A courier only records a deposit once the bank has
+ * taken it, and the claims are read before the bank, so in a bank that keeps
+ * correct books the claims are never more than the night safe plus the vault.
+ * The drift is then 0 when no deposits are in progress, and below 0 by the
+ * deposits in flight otherwise. A drift above 0 is money the bank lost.
+ */
+public class AuditSnapshot {
+	private final long nightSafeAmount;
+	private final long vaultAmount;
+	private final long claimedAmount;
+	/** How often a part of the snapshot had to be read again because a deposit got in the way */
+	private final int nofRetries;
+
+	/**
+	 * Creates a snapshot of the money in a ledger, before the claims are known.
+	 * The claimed amount is 0 until the claims are added with withClaims.
+	 */
+	public AuditSnapshot(long nightSafeAmount, long vaultAmount, int nofRetries) {
+		this(nightSafeAmount, vaultAmount, 0, nofRetries);
+	}
+
+	public AuditSnapshot(long nightSafeAmount, long vaultAmount, long claimedAmount, int nofRetries) {
+		this.nightSafeAmount = nightSafeAmount;
+		this.vaultAmount = vaultAmount;
+		this.claimedAmount = claimedAmount;
+		this.nofRetries = nofRetries;
+	}
+
+	/**
+	 * Returns this snapshot with the given money claimed by the couriers.
+	 */
+	public AuditSnapshot withClaims(long claimedAmount) {
+		return new AuditSnapshot(nightSafeAmount, vaultAmount, claimedAmount, nofRetries);
+	}
+
+	public long getNightSafeAmount() {
+		return nightSafeAmount;
+	}
+
+	public long getVaultAmount() {
+		return vaultAmount;
+	}
+
+	public long getClaimedAmount() {
+		return claimedAmount;
+	}
+
+	public int getNofRetries() {
+		return nofRetries;
+	}
+
+	/**
+	 * Returns the money claimed by the couriers that is not in the bank.
+	 */
+	public long getDrift() {
+		return claimedAmount - (nightSafeAmount + vaultAmount);
+	}
+
+	@Override
+	public String toString() {
+		return "night safe "+nightSafeAmount+", vault "+vaultAmount+", claimed "+claimedAmount+", drift "+getDrift();
+	}
+}
@@ -0,0 +1,93 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audits a bank a number of times per second while couriers deposit, keeping
+ * track of the largest drift between the money the couriers claim and the money
+ * in the bank, and of what the audits cost.
+ */
+public class Auditor implements Runnable {
+	private final Bank bank;
+	private final long intervalNanos;
+	private volatile boolean running = true;
+	private final Thread thread;
+
+	// Only written by the auditor thread, read after it is stopped
+	private long nofAudits;
+	private long nofRetries;
+	private long largestDrift = Long.MIN_VALUE;
+	private long longestAuditNanos;
+	private long totalAuditNanos;
+	private AuditSnapshot lastSnapshot;
+
+	/**
+	 * Starts auditing the bank.
+	 * @param auditsPerSecond	How often to take a snapshot, at least 1.
+	 * @throws UnsupportedOperationException	If the ledger of the bank can not be audited while couriers deposit.
+	 */
+	public Auditor(Bank bank, int auditsPerSecond) {
+		if(auditsPerSecond < 1) {
+			throw new IllegalArgumentException("Audit at least once a second");
+		}
+		if(!bank.getLedger().isAuditable()) {
+			throw new UnsupportedOperationException("The "+bank.getLedger().getName()+
+					" ledger can not be audited while couriers deposit");
+		}
+		this.bank = bank;
+		this.intervalNanos = 1000000000L/auditsPerSecond;
+		thread = new Thread(this, "auditor");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		long next = System.nanoTime();
+		while(running) {
+			long start = System.nanoTime();
+			AuditSnapshot snapshot = bank.audit();
+			long time = System.nanoTime()-start;
+			nofAudits++;
+			nofRetries += snapshot.getNofRetries();
+			totalAuditNanos += time;
+			longestAuditNanos = Math.max(longestAuditNanos, time);
+			largestDrift = Math.max(largestDrift, snapshot.getDrift());
+			lastSnapshot = snapshot;
+			next += intervalNanos;
+			LockSupport.parkNanos(next-System.nanoTime());
+		}
+	}
+
+	/**
+	 * Stops auditing, and returns when the last audit is done.
+	 */
+	public void stop() {
+		running = false;
+		try {
+			thread.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public long getNofAudits() {
+		return nofAudits;
+	}
+
+	/**
+	 * Returns the largest drift seen by any audit: above 0 if the bank lost
+	 * money, or Long.MIN_VALUE before the first audit.
+	 */
+	public long getLargestDrift() {
+		return largestDrift;
+	}
+
+	/**
+	 * Returns a summary of the audits. Only call after stop.
+	 */
+	public String report() {
+		return nofAudits+" audits, largest drift "+(nofAudits == 0 ? "none" : String.valueOf(largestDrift))+", "+
+				String.format("%.2f", (double)nofRetries/Math.max(1, nofAudits))+" retries and "+
+				totalAuditNanos/Math.max(1, nofAudits)+" ns per audit, longest "+longestAuditNanos+" ns"+
+				(lastSnapshot == null ? "" : ", last audit saw "+lastSnapshot);
+	}
+}
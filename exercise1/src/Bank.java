@@ -1,97 +1,498 @@
-import java.util.ArrayList;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Bank {
-	private int nightSafeAmount;
-	private int vaultAmount;
+	/**
+	 * How the couriers are run.
+	 */
+	public enum ThreadMode {
+		/** One platform thread per courier, which limits the number of couriers to a few thousand */
+		PLATFORM,
+		/** One virtual thread per courier, which needs Java 21 */
+		VIRTUAL,
+		/** A fixed pool of platform threads running the couriers one after another */
+		POOL
+	}
+
+	/** The night safe and the vault */
+	private final Ledger ledger;
+	/** The accounts couriers deposit in, or null to use the night safe */
+	private final AccountLedger accounts;
+	/** When couriers send their collected deposits to the bank */
+	private final FlushPolicy flushPolicy;
+	/** Where deposits are written before they count, or null to keep them in memory only */
+	private final DepositJournal journal;
+	/** Whether the last courier prints the report */
+	private final boolean report;
 	private Courier[] couriers;
 	private long startTime;
-	private int nofActiveCouriers;
-	private ArrayList<Thread> threads = new ArrayList<>();
+	/** Counts down as couriers finish, the courier taking it to zero writes the report */
+	private final AtomicInteger nofActiveCouriers = new AtomicInteger();
+	/** Released by the last courier when it is done */
+	private final CountDownLatch allCouriersDone = new CountDownLatch(1);
+	/** The first exception a courier stopped with, or null */
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+	/** The total number of deposits the couriers make */
+	private final long nofDeposits;
+	/** Audits the bank while the couriers run, or null */
+	private final Auditor auditor;
 
 	/**
 	 * Creates a new bank, with a number of couriers, and
 	 * starts all the couriers.
 	 */
 	public Bank(int nofCouriers, int nofVisits) {
+		this(nofCouriers, nofVisits, new StripedLedger(), FlushPolicy.UNBATCHED, true);
+	}
+
+	/**
+	 * Creates a new bank keeping its money in the given ledger, with a number of
+	 * couriers, and starts all the couriers, each on its own platform thread.
+	 * Returns when all couriers are done.
+	 * @param flushPolicy	When couriers send their collected deposits to the bank.
+	 * @param report		Whether to print the report when the couriers are done.
+	 */
+	public Bank(int nofCouriers, int nofVisits, Ledger ledger, FlushPolicy flushPolicy, boolean report) {
+		this(nofCouriers, nofVisits, ledger, flushPolicy, ThreadMode.PLATFORM, 0, report);
+	}
+
+	/**
+	 * Creates a new bank keeping its money in the given ledger, with a number of
+	 * couriers, and starts all the couriers. Returns when all couriers are done.
+	 * @param flushPolicy	When couriers send their collected deposits to the bank.
+	 * @param threadMode	How the couriers are run.
+	 * @param poolSize		The number of threads in the pool, used with ThreadMode.POOL.
+	 * @param report		Whether to print the report when the couriers are done.
+	 */
+	public Bank(int nofCouriers, int nofVisits, Ledger ledger, FlushPolicy flushPolicy, ThreadMode threadMode,
+				int poolSize, boolean report) {
+		this(nofCouriers, nofVisits, ledger, flushPolicy, threadMode, poolSize, null, report);
+	}
+
+	/**
+	 * Creates a new bank keeping its money in the given ledger, with a number of
+	 * couriers, and starts all the couriers. Returns when all couriers are done.
+	 * @param flushPolicy	When couriers send their collected deposits to the bank.
+	 * @param threadMode	How the couriers are run.
+	 * @param poolSize		The number of threads in the pool, used with ThreadMode.POOL.
+	 * @param journal		The journal every deposit is written to before it returns, or null for none.
+	 *						The ledger must hold what was recovered from the journal.
+	 * @param report		Whether to print the report when the couriers are done.
+	 */
+	public Bank(int nofCouriers, int nofVisits, Ledger ledger, FlushPolicy flushPolicy, ThreadMode threadMode,
+				int poolSize, DepositJournal journal, boolean report) {
+		this(nofCouriers, nofVisits, ledger, flushPolicy, threadMode, poolSize, journal, 0, report);
+	}
+
+	/**
+	 * Creates a new bank keeping its money in the given ledger, with a number of
+	 * couriers, and starts all the couriers. Returns when all couriers are done.
+	 * @param flushPolicy		When couriers send their collected deposits to the bank.
+	 * @param threadMode		How the couriers are run.
+	 * @param poolSize			The number of threads in the pool, used with ThreadMode.POOL.
+	 * @param journal			The journal every deposit is written to before it returns, or null for none.
+	 *							The ledger must hold what was recovered from the journal.
+	 * @param auditsPerSecond	How often to audit the bank while the couriers run, or 0 to not audit it.
+	 * @param report			Whether to print the report when the couriers are done.
+	 * @throws UnsupportedOperationException	If audits are asked for and the ledger is not auditable.
+	 */
+	public Bank(int nofCouriers, int nofVisits, Ledger ledger, FlushPolicy flushPolicy, ThreadMode threadMode,
+				int poolSize, DepositJournal journal, int auditsPerSecond, boolean report) {
+		this(nofCouriers, nofVisits, ledger, null, null, flushPolicy, threadMode, poolSize, journal, auditsPerSecond,
+				report);
+	}
+
+	/**
+	 * Creates a new bank like the others, which can keep its money in accounts
+	 * rather than the night safe and the vault: every courier deposits each
+	 * amount in an account picked by the selector, and the ledger is not used.
+	 * The journal and audits only know the night safe and the vault, so they
+	 * can not be used with accounts.
+	 * @param accounts			The accounts to deposit in, or null to use the ledger.
+	 * @param selector			Picks the accounts, or null to use the ledger.
+	 * @throws IllegalArgumentException	If accounts are used with a journal or audits.
+	 * @throws RuntimeException			The first exception a courier stopped with, for
+	 * 									example an UncheckedIOException if the journal
+	 * 									could not be forced, once all couriers are done.
+	 */
+	public Bank(int nofCouriers, int nofVisits, Ledger ledger, AccountLedger accounts, AccountSelector selector,
+				FlushPolicy flushPolicy, ThreadMode threadMode, int poolSize, DepositJournal journal,
+				int auditsPerSecond, boolean report) {
+		if((accounts == null) != (selector == null)) {
+			throw new IllegalArgumentException("Accounts need a selector, and a selector accounts");
+		}
+		if(accounts != null && (journal != null || auditsPerSecond > 0)) {
+			throw new IllegalArgumentException("The journal and audits can not be used with accounts");
+		}
+		this.ledger = ledger;
+		this.accounts = accounts;
+		this.flushPolicy = flushPolicy;
+		this.journal = journal;
+		this.report = report;
+		nofDeposits = (long)nofCouriers*nofVisits;
 		startTime = System.currentTimeMillis();
 		couriers = new Courier[nofCouriers];
-		nofActiveCouriers = nofCouriers;
+		nofActiveCouriers.set(nofCouriers);
 		for(int i = 0; i < nofCouriers; i++) {
-			couriers[i] = new Courier(nofVisits, this);
-			Thread thread = new Thread(couriers[i]);
-			threads.add(thread);
-			thread.start();
-		}
-
-		// At this point all threads are running.
-		// We have to make sure in the main thread that
-		// all computations has completed by calling
-		// thread.join().
-		for (Thread thread : threads) {
-			try{
-				thread.join();
-			} catch (InterruptedException e) {
-				// This should not happen.
-				e.printStackTrace();
+			couriers[i] = new Courier(i, nofVisits, this, flushPolicy, selector);
+		}
+		if(nofCouriers == 0) {
+			allCouriersDone.countDown();
+		}
+		auditor = auditsPerSecond > 0 ? new Auditor(this, auditsPerSecond) : null;
+
+		ExecutorService executor = null;
+		if(threadMode == ThreadMode.VIRTUAL) {
+			executor = newVirtualThreadExecutor();
+		} else if(threadMode == ThreadMode.POOL) {
+			executor = Executors.newFixedThreadPool(poolSize);
+		}
+		for(Courier courier : couriers) {
+			if(executor == null) {
+				new Thread(courier).start();
+			} else {
+				executor.execute(courier);
 			}
 		}
+
+		// At this point all couriers are running or queued.
+		// The last courier to finish releases the latch, so
+		// there is no need to keep and join every thread.
+		try {
+			allCouriersDone.await();
+		} catch (InterruptedException e) {
+			// This should not happen.
+			e.printStackTrace();
+		}
+		if(executor != null) {
+			executor.shutdown();
+		}
+		if(auditor != null) {
+			auditor.stop();
+		}
+		if(failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
+	/**
+	 * Returns an executor starting a virtual thread for every task. Virtual threads
+	 * came with Java 21, and the sources are kept at Java 8, so the executor is
+	 * looked up by reflection.
+	 * @throws UnsupportedOperationException	If the JVM has no virtual threads.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+		}
 	}
 
 	/**
 	 * Deposit a given amount of money. The money is put in the
 	 * night safe. If there is too much money in the night safe,
 	 * all the money is transferred to the vault.
+	 * Safe to call from many couriers at once. With a journal, returns
+	 * when the deposit is on disk.
 	 */
-	public void depositMoney(int amount) {
-		nightSafeAmount += amount;
-		if(nightSafeAmount > 200) {
-			// Transfer the money in the night safe to the vault:
-			vaultAmount += nightSafeAmount;
-			nightSafeAmount = 0;
+	public void depositMoney(int courierId, int amount) {
+		if(journal != null) {
+			journal.deposit(courierId, amount, ledger);
+		} else {
+			ledger.deposit(amount);
 		}
 	}
 
 	/**
-	 * Called by a courier when he is done with his deposits.
+	 * Deposit a given amount of money in an account. Only for a bank
+	 * with accounts.
+	 */
+	public void depositMoney(int courierId, int account, int amount) {
+		accounts.deposit(account, amount);
+	}
+
+	/**
+	 * Deposit a batch of amounts, each in its own account. Only for a
+	 * bank with accounts.
+	 * @param courierId	The courier making the deposits.
+	 * @param accounts	The account of each amount.
+	 * @param amounts	The amounts to deposit.
+	 * @param count		The number of amounts to deposit, from the start of the arrays.
+	 */
+	public void depositBatch(int courierId, int[] accounts, int[] amounts, int count) {
+		this.accounts.depositBatch(accounts, amounts, count);
+	}
+
+	/**
+	 * Deposit a batch of amounts, with the same result as depositing
+	 * them one at a time in order.
+	 * @param courierId	The courier making the deposits.
+	 * @param amounts	The amounts to deposit.
+	 * @param count		The number of amounts to deposit, from the start of the array.
+	 */
+	public void depositBatch(int courierId, int[] amounts, int count) {
+		if(journal != null) {
+			journal.depositBatch(courierId, amounts, count, ledger);
+		} else {
+			ledger.depositBatch(amounts, count);
+		}
+	}
+
+	/**
+	 * Called by a courier whose deposit failed, before it calls courierDone.
+	 * The constructor throws the first such exception.
+	 */
+	public void courierFailed(RuntimeException e) {
+		failure.compareAndSet(null, e);
+	}
+
+	/**
+	 * Called by a courier when he is done with his deposits, or has stopped
+	 * because one failed.
 	 */
 	public void courierDone() {
-		nofActiveCouriers--;
-		if(nofActiveCouriers == 0) {
+		if(nofActiveCouriers.decrementAndGet() > 0) {
+			return;
+		}
+		// Without all deposits the report would only show a discrepancy
+		if(report && failure.get() == null) {
 			System.out.println("All couriers are done.");
 			// Check if the money deposited equals the money in the bank:
-			int moneyInBank = nightSafeAmount + vaultAmount;
-			int moneyDeposited = calculateMoneyDeposited();
+			long moneyInBank = getMoneyInBank();
+			long moneyDeposited = calculateMoneyDeposited();
 			System.out.println("Money in the bank: "+moneyInBank);
 			System.out.println("Total money deposited: "+moneyDeposited);
+			if(journal != null) {
+				// The money recovered from the journal was deposited by earlier couriers
+				System.out.println("Recovered from the journal: "+journal.getRecoveredAmount()+" in "+
+						journal.getNofRecoveredDeposits()+" deposits");
+				moneyDeposited += journal.getRecoveredAmount();
+			}
 			System.out.println("Discrepancy: "+(moneyDeposited-moneyInBank));
-			System.out.println("Elapsed time: "+(System.currentTimeMillis()-startTime)+" milliseconds.");
+			long elapsed = System.currentTimeMillis()-startTime;
+			System.out.println("Elapsed time: "+elapsed+" milliseconds.");
+			System.out.println("Deposits per second: "+nofDeposits*1000/Math.max(1, elapsed));
+			if(journal != null) {
+				long forces = journal.getNofForces();
+				System.out.println("Journal forces: "+forces+", "+
+						String.format("%.1f", (double)journal.getNofAppendedDeposits()/Math.max(1, forces))+" deposits per force");
+			}
+			long peak = peakResidentSetSize();
+			if(peak >= 0) {
+				System.out.println("Peak resident set size: "+peak/1024+" MB");
+			}
 		}
+		allCouriersDone.countDown();
+	}
+
+	/**
+	 * Returns the peak resident set size of the JVM process in KB, as reported
+	 * by Linux in /proc/self/status, or -1 where that is not available.
+	 */
+	static long peakResidentSetSize() {
+		try(BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.startsWith("VmHWM:")) {
+					return Long.parseLong(line.substring(6).replace("kB", "").trim());
+				}
+			}
+		} catch(IOException | NumberFormatException e) {
+			// Not on Linux
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the money in the night safe and the vault together, or in all
+	 * accounts for a bank with accounts.
+	 */
+	public long getMoneyInBank() {
+		if(accounts != null) {
+			return accounts.getTotal();
+		}
+		return ledger.getNightSafeAmount() + ledger.getVaultAmount();
+	}
+
+	/**
+	 * Returns a snapshot of the money in the bank and the money the couriers
+	 * claim to have deposited by their own records, plus what was recovered
+	 * from the journal, without making the couriers wait. The claims are read
+	 * first, so every deposit they hold is in the bank part of the snapshot.
+	 * @throws UnsupportedOperationException	If the ledger is not auditable.
+	 */
+	public AuditSnapshot audit() {
+		long claimed = calculateMoneyDeposited() + (journal == null ? 0 : journal.getRecoveredAmount());
+		return ledger.snapshot().withClaims(claimed);
+	}
+
+	/**
+	 * Returns the auditor that audited the bank while the couriers ran, or null if none did.
+	 */
+	public Auditor getAuditor() {
+		return auditor;
+	}
+
+	public Ledger getLedger() {
+		return ledger;
 	}
 
 	/**
 	 * Sum up all the reported deposits to find out how much
 	 * the couriers claim that they have deposited.
 	 */
-	public int calculateMoneyDeposited() {
-		int result = 0;
+	public long calculateMoneyDeposited() {
+		long result = 0;
 		for(int i = 0; i < couriers.length; i++)
 			result += couriers[i].getAmountDeposited();
 		return result;
 	}
 
+	private static final String USAGE =
+			"Usage: java Bank <number of couriers> <number of visits> [options]\n" +
+			"  --ledger <name>          The ledger keeping the money: "+String.join(", ", Ledger.NAMES)+" (default striped)\n" +
+			"  --batch <n>              Deposits a courier collects before sending them to the bank (default 1)\n" +
+			"  --flush-amount <dollars> Also send the collected deposits once they add up to this (default 0, off)\n" +
+			"  --threads <mode>         platform (a thread per courier), virtual (a virtual thread per courier,\n" +
+			"                           Java 21) or pool (a fixed thread pool) (default platform)\n" +
+			"  --pool-size <n>          Threads in the pool (default all cores)\n" +
+			"  --journal <dir>          Write every deposit to a journal in this directory before it counts,\n" +
+			"                           recovering the money already in the journal first (default off)\n" +
+			"  --group-size <n>         Force the journal once this many deposits are waiting (default 32)\n" +
+			"  --flush-interval <us>    Or once the first waiting deposit has waited this long, 0 forces\n" +
+			"                           whatever is waiting right away (default 100)\n" +
+			"  --audit <n>              Audit the bank n times a second while the couriers run, with a\n" +
+			"                           ledger that allows it: striped or seqlock (default off)\n" +
+			"  --accounts <n>           Deposit in this many accounts instead of the night safe, each\n" +
+			"                           in a random account, without journal or audits (default 0, off)\n" +
+			"  --skew <s>               Zipf skew of the accounts picked, 0 is uniform (default 0)\n" +
+			"  --stripes <n>            Locks guarding the accounts (default 64 per core)";
+
 	/**
 	 * Reads the number of couriers and the number of visits to the
 	 * bank for each courier from the command line parameters, and
-	 * starts the simulation.
+	 * starts the simulation. Options choose the ledger, how couriers
+	 * batch their deposits, how they are run and the journal.
 	 */
 	public static void main(String[] args) {
-		if(args.length < 2) {
-			System.out.println("Usage: java Bank <number of couriers> <number of visits>");
-			System.exit(0);
-		}
-		int nofCouriers = Integer.parseInt(args[0]);
-		int nofVisits = Integer.parseInt(args[1]);
-		System.out.println("Starting simulation of "+nofCouriers+" couriers with "+nofVisits+" deposits each.");
-		Bank b = new Bank(nofCouriers, nofVisits);
+		if(args.length < 2 || args[0].startsWith("-")) {
+			exitWithUsage(null);
+		}
+		String ledgerName = "striped";
+		int batchSize = 1;
+		long flushAmount = 0;
+		ThreadMode threadMode = ThreadMode.PLATFORM;
+		int poolSize = Runtime.getRuntime().availableProcessors();
+		String journalDirectory = null;
+		int groupSize = 32;
+		long flushInterval = 100;
+		int auditsPerSecond = 0;
+		int nofAccounts = 0;
+		double skew = 0;
+		int nofStripes = 64*Runtime.getRuntime().availableProcessors();
+		int nofCouriers = 0;
+		int nofVisits = 0;
+		Ledger ledger = null;
+		FlushPolicy flushPolicy = null;
+		AccountLedger accounts = null;
+		AccountSelector selector = null;
+		try {
+			nofCouriers = Integer.parseInt(args[0]);
+			nofVisits = Integer.parseInt(args[1]);
+			for(int i = 2; i < args.length; i++) {
+				String flag = args[i];
+				if(i+1 == args.length) {
+					exitWithUsage("Missing value for "+flag);
+				}
+				String value = args[++i];
+				switch(flag) {
+					case "--ledger": ledgerName = value; break;
+					case "--batch": batchSize = Integer.parseInt(value); break;
+					case "--flush-amount": flushAmount = Long.parseLong(value); break;
+					case "--threads": threadMode = ThreadMode.valueOf(value.toUpperCase()); break;
+					case "--pool-size": poolSize = Integer.parseInt(value); break;
+					case "--journal": journalDirectory = value; break;
+					case "--group-size": groupSize = Integer.parseInt(value); break;
+					case "--flush-interval": flushInterval = Long.parseLong(value); break;
+					case "--audit": auditsPerSecond = Integer.parseInt(value); break;
+					case "--accounts": nofAccounts = Integer.parseInt(value); break;
+					case "--skew": skew = Double.parseDouble(value); break;
+					case "--stripes": nofStripes = Integer.parseInt(value); break;
+					default: exitWithUsage("Unknown option "+flag);
+				}
+			}
+			ledger = Ledger.create(ledgerName);
+			flushPolicy = new FlushPolicy(batchSize, flushAmount);
+			if(poolSize < 1) {
+				exitWithUsage("The pool needs at least 1 thread.");
+			}
+			if(groupSize < 1 || flushInterval < 0) {
+				exitWithUsage("The group size must be at least 1 and the flush interval not negative.");
+			}
+			if(auditsPerSecond < 0) {
+				exitWithUsage("The number of audits can not be negative.");
+			}
+			if(nofAccounts < 0) {
+				exitWithUsage("The number of accounts can not be negative.");
+			}
+			if(nofAccounts > 0) {
+				if(journalDirectory != null || auditsPerSecond > 0) {
+					exitWithUsage("The journal and audits can not be used with accounts.");
+				}
+				accounts = new AccountLedger(nofAccounts, nofStripes, 0);
+				selector = new AccountSelector(nofAccounts, skew);
+			}
+		} catch(IllegalArgumentException iae) {
+			exitWithUsage(iae.getMessage());
+		}
+		System.out.println("Starting simulation of "+nofCouriers+" couriers with "+nofVisits+" deposits each, using "+
+				(accounts == null ? "the "+ledger.getName()+" ledger" :
+					accounts.getNofAccounts()+" accounts picked "+selector+" under "+accounts.getNofStripes()+" locks")+
+				", "+flushPolicy+", "+threadMode.name().toLowerCase()+" threads.");
+		DepositJournal journal = null;
+		if(journalDirectory != null) {
+			try {
+				journal = new DepositJournal(new File(journalDirectory), groupSize, flushInterval, ledger);
+			} catch(IOException e) {
+				System.out.println("Can not open the journal: "+e.getMessage());
+				System.exit(1);
+			}
+			System.out.println("Journal in "+journalDirectory+", forced every "+groupSize+" deposits or "+
+					flushInterval+" microseconds, recovered "+journal.getNofRecoveredDeposits()+" deposits.");
+		}
+		try {
+			Bank b = new Bank(nofCouriers, nofVisits, ledger, accounts, selector, flushPolicy, threadMode, poolSize,
+					journal, auditsPerSecond, true);
+			if(b.getAuditor() != null) {
+				System.out.println("Audits while the couriers ran: "+b.getAuditor().report());
+			}
+		} catch(UnsupportedOperationException uoe) {
+			System.out.println(uoe.getMessage());
+			System.exit(1);
+		} catch(UncheckedIOException | IllegalStateException e) {
+			System.out.println("The couriers stopped: "+e.getMessage());
+			System.exit(1);
+		} finally {
+			if(journal != null) {
+				journal.close();
+			}
+		}
+	}
+
+	private static void exitWithUsage(String message) {
+		if(message != null) {
+			System.out.println(message);
+		}
+		System.out.println(USAGE);
+		System.exit(message == null ? 0 : 1);
 	}
 }
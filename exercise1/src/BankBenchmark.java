@@ -0,0 +1,327 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Measures deposit throughput and latency of every ledger, with 1, 2, 4, ...
+ * up to all cores courier threads. The couriers are real Couriers depositing
+ * through a Bank, and after every run the money in the bank is checked against
+ * the amounts the couriers claim with getAmountDeposited. A ledger that loses
+ * money is reported as FAILED and makes the benchmark exit with status 1,
+ * however fast it was.
+ *
+ * Throughput is the median over a number of trials, after one warm-up trial.
+ * Latency is measured in a separate trial, timing every 32nd deposit (or batch)
+ * of every courier, so the timing does not slow down the throughput trials.
+ * With batching, throughput still counts single deposits.
+ *
+ * With a journal directory, a second table compares the throughput of every
+ * ledger without and with a DepositJournal, trials taking turns. These runs
+ * use fewer deposits, as every deposit waits for its group to be forced.
+ */
+public class BankBenchmark {
+	private static final String USAGE =
+			"Usage: java BankBenchmark [options]\n" +
+			"  --visits <n>        Deposits per courier in each trial (default 1000000)\n" +
+			"  --trials <n>        Measured trials per ledger and thread count (default 5)\n" +
+			"  --max-threads <n>   Largest number of courier threads (default all cores)\n" +
+			"  --batch <n>         Deposits a courier sends to the bank at once (default 1)\n" +
+			"  --ledgers <a,b,..>  Ledgers to measure (default all: "+String.join(",", Ledger.NAMES)+")\n" +
+			"  --journal <dir>     Also compare every ledger without and with a journal in this directory,\n" +
+			"                      whose journal files are deleted between runs (default off)\n" +
+			"  --journal-visits <n> Deposits per courier in the journal runs (default 20000)\n" +
+			"  --group-size <n>    Journal group size (default 32)\n" +
+			"  --flush-interval <us> Journal flush interval in microseconds (default 100)";
+
+	/** Every SAMPLE_INTERVAL-th deposit of a courier is timed in the latency trial */
+	private static final int SAMPLE_INTERVAL = 32;
+
+	public static void main(String[] args) {
+		int visits = 1000000;
+		int trials = 5;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		String[] ledgers = Ledger.NAMES;
+		int batchSize = 1;
+		File journalDirectory = null;
+		int journalVisits = 20000;
+		int groupSize = 32;
+		long flushInterval = 100;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				String flag = args[i];
+				if(flag.equals("--help") || flag.equals("-h")) {
+					exitWithUsage(null);
+				}
+				if(i+1 == args.length) {
+					exitWithUsage("Missing value for "+flag);
+				}
+				String value = args[++i];
+				switch(flag) {
+					case "--visits": visits = Integer.parseInt(value); break;
+					case "--trials": trials = Integer.parseInt(value); break;
+					case "--max-threads": maxThreads = Integer.parseInt(value); break;
+					case "--ledgers": ledgers = value.split(","); break;
+					case "--batch": batchSize = Integer.parseInt(value); break;
+					case "--journal": journalDirectory = new File(value); break;
+					case "--journal-visits": journalVisits = Integer.parseInt(value); break;
+					case "--group-size": groupSize = Integer.parseInt(value); break;
+					case "--flush-interval": flushInterval = Long.parseLong(value); break;
+					default: exitWithUsage("Unknown option "+flag);
+				}
+			}
+			for(String name : ledgers) {
+				Ledger.create(name);
+			}
+		} catch(IllegalArgumentException iae) {
+			exitWithUsage(iae.getMessage());
+		}
+		if(visits < 1 || trials < 1 || maxThreads < 1 || batchSize < 1 || journalVisits < 1 || groupSize < 1) {
+			exitWithUsage("All values must be at least 1.");
+		}
+		if(flushInterval < 0) {
+			exitWithUsage("The flush interval can not be negative.");
+		}
+
+		List<Integer> threadCounts = new ArrayList<>();
+		for(int t = 1; t < maxThreads; t *= 2) {
+			threadCounts.add(t);
+		}
+		threadCounts.add(maxThreads);
+
+		System.out.println(String.format("%-13s %7s %15s %15s %15s %9s %9s %9s %9s  %s",
+				"ledger", "threads", "deposits/s", "min/s", "max/s", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "check"));
+		FlushPolicy flushPolicy = new FlushPolicy(batchSize, 0);
+		boolean failed = false;
+		for(int threads : threadCounts) {
+			for(String name : ledgers) {
+				failed |= !measure(name.trim(), threads, visits, trials, flushPolicy);
+			}
+		}
+		if(journalDirectory != null) {
+			System.out.println();
+			System.out.println("Journal forced every "+groupSize+" deposits or "+flushInterval+" microseconds, "+
+					journalVisits+" deposits per courier");
+			System.out.println(String.format("%-13s %7s %15s %15s %9s %14s  %s",
+					"ledger", "threads", "off deposits/s", "on deposits/s", "slowdown", "deposits/force", "check"));
+			try {
+				for(int threads : threadCounts) {
+					for(String name : ledgers) {
+						failed |= !measureJournal(name.trim(), threads, journalVisits, trials, flushPolicy,
+								journalDirectory, groupSize, flushInterval);
+					}
+				}
+			} catch(IOException e) {
+				System.out.println("Can not use the journal: "+e.getMessage());
+				System.exit(1);
+			}
+		}
+		if(failed) {
+			System.out.println("Some ledgers lost money.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs the trials of one ledger and thread count, and prints a line of results.
+	 * @return	Whether the ledger kept all the money in every trial.
+	 */
+	private static boolean measure(String name, int threads, int visits, int trials, FlushPolicy flushPolicy) {
+		long discrepancy = run(Ledger.create(name), threads, visits, flushPolicy)[1];
+		double[] throughputs = new double[trials];
+		for(int i = 0; i < trials; i++) {
+			long[] result = run(Ledger.create(name), threads, visits, flushPolicy);
+			throughputs[i] = (double)threads*visits*1e9/Math.max(1, result[0]);
+			if(result[1] != 0) {
+				discrepancy = result[1];
+			}
+		}
+		Arrays.sort(throughputs);
+
+		LatencySampler sampler = new LatencySampler(Ledger.create(name));
+		long[] result = run(sampler, threads, visits, flushPolicy);
+		if(result[1] != 0) {
+			discrepancy = result[1];
+		}
+		long[] latencies = sampler.getSortedSamples();
+
+		System.out.println(String.format("%-13s %7d %,15.0f %,15.0f %,15.0f %9d %9d %9d %9d  %s",
+				name, threads, throughputs[trials/2], throughputs[0], throughputs[trials-1],
+				percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+				latencies.length == 0 ? 0 : latencies[latencies.length-1],
+				discrepancy == 0 ? "ok" : "FAILED, discrepancy "+discrepancy));
+		return discrepancy == 0;
+	}
+
+	/**
+	 * Runs the trials of one ledger and thread count without and with a journal,
+	 * taking turns, and prints a line of results.
+	 * @return	Whether the ledger kept all the money in every trial.
+	 */
+	private static boolean measureJournal(String name, int threads, int visits, int trials, FlushPolicy flushPolicy,
+			File directory, int groupSize, long flushInterval) throws IOException {
+		long discrepancy = 0;
+		double[] off = new double[trials];
+		double[] on = new double[trials];
+		long deposits = 0;
+		long forces = 0;
+		// The first round warms up
+		for(int i = -1; i < trials; i++) {
+			long[] result = run(Ledger.create(name), threads, visits, flushPolicy);
+			if(result[1] != 0) {
+				discrepancy = result[1];
+			}
+			if(i >= 0) {
+				off[i] = (double)threads*visits*1e9/Math.max(1, result[0]);
+			}
+
+			DepositJournal.delete(directory);
+			DepositJournal journal = new DepositJournal(directory, groupSize, flushInterval, Ledger.create(name));
+			try {
+				result = run(Ledger.create(name), threads, visits, flushPolicy, journal);
+			} finally {
+				journal.close();
+			}
+			if(result[1] != 0) {
+				discrepancy = result[1];
+			}
+			if(i >= 0) {
+				on[i] = (double)threads*visits*1e9/Math.max(1, result[0]);
+				deposits += journal.getNofAppendedDeposits();
+				forces += journal.getNofForces();
+			}
+		}
+		DepositJournal.delete(directory);
+		Arrays.sort(off);
+		Arrays.sort(on);
+
+		System.out.println(String.format("%-13s %7d %,15.0f %,15.0f %8.1fx %,14.1f  %s",
+				name, threads, off[trials/2], on[trials/2], off[trials/2]/on[trials/2],
+				(double)deposits/Math.max(1, forces),
+				discrepancy == 0 ? "ok" : "FAILED, discrepancy "+discrepancy));
+		return discrepancy == 0;
+	}
+
+	/**
+	 * Lets the couriers deposit through a bank using the given ledger.
+	 * @return	The elapsed time in nanoseconds, and the money deposited minus the money in the bank.
+	 */
+	private static long[] run(Ledger ledger, int threads, int visits, FlushPolicy flushPolicy) {
+		return run(ledger, threads, visits, flushPolicy, null);
+	}
+
+	/**
+	 * Lets the couriers deposit through a bank using the given ledger and journal.
+	 * @param journal	The journal, opened empty, or null for none.
+	 * @return	The elapsed time in nanoseconds, and the money deposited minus the money in the bank.
+	 */
+	private static long[] run(Ledger ledger, int threads, int visits, FlushPolicy flushPolicy, DepositJournal journal) {
+		long start = System.nanoTime();
+		Bank bank = new Bank(threads, visits, ledger, flushPolicy, Bank.ThreadMode.PLATFORM, 0, journal, false);
+		long elapsed = System.nanoTime()-start;
+		return new long[] {elapsed, bank.calculateMoneyDeposited()-bank.getMoneyInBank()};
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length-1, (int)(fraction*sorted.length))];
+	}
+
+	private static void exitWithUsage(String message) {
+		if(message != null) {
+			System.out.println(message);
+		}
+		System.out.println(USAGE);
+		System.exit(message == null ? 0 : 1);
+	}
+
+	/**
+	 * A ledger timing every SAMPLE_INTERVAL-th deposit of every thread. Each thread
+	 * records its samples in its own buffer, so timing does not add contention.
+	 */
+	private static class LatencySampler implements Ledger {
+		private final Ledger ledger;
+		private final ConcurrentLinkedQueue<Samples> allSamples = new ConcurrentLinkedQueue<>();
+		private final ThreadLocal<Samples> samples = ThreadLocal.withInitial(() -> {
+			Samples s = new Samples();
+			allSamples.add(s);
+			return s;
+		});
+
+		LatencySampler(Ledger ledger) {
+			this.ledger = ledger;
+		}
+
+		public void deposit(int amount) {
+			Samples s = samples.get();
+			if(++s.count % SAMPLE_INTERVAL != 0) {
+				ledger.deposit(amount);
+				return;
+			}
+			long start = System.nanoTime();
+			ledger.deposit(amount);
+			s.add(System.nanoTime()-start);
+		}
+
+		public void depositBatch(int[] amounts, int count) {
+			Samples s = samples.get();
+			if(++s.count % SAMPLE_INTERVAL != 0) {
+				ledger.depositBatch(amounts, count);
+				return;
+			}
+			long start = System.nanoTime();
+			ledger.depositBatch(amounts, count);
+			s.add(System.nanoTime()-start);
+		}
+
+		public long getNightSafeAmount() {
+			return ledger.getNightSafeAmount();
+		}
+
+		public long getVaultAmount() {
+			return ledger.getVaultAmount();
+		}
+
+		public String getName() {
+			return ledger.getName();
+		}
+
+		/**
+		 * Returns the samples of all threads, sorted. Only call when the threads are done.
+		 */
+		long[] getSortedSamples() {
+			int total = 0;
+			for(Samples s : allSamples) {
+				total += s.size;
+			}
+			long[] result = new long[total];
+			int i = 0;
+			for(Samples s : allSamples) {
+				System.arraycopy(s.values, 0, result, i, s.size);
+				i += s.size;
+			}
+			Arrays.sort(result);
+			return result;
+		}
+	}
+
+	/**
+	 * The latency samples of one thread.
+	 */
+	private static class Samples {
+		long count;
+		long[] values = new long[1024];
+		int size;
+
+		void add(long value) {
+			if(size == values.length) {
+				values = Arrays.copyOf(values, 2*size);
+			}
+			values[size++] = value;
+		}
+	}
+}
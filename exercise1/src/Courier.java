@@ -1,35 +1,110 @@
+import java.util.concurrent.ThreadLocalRandom;
+
 public class Courier implements Runnable {
+	/** Identifies the courier in the bank's deposit journal */
+	private final int id;
     private Bank bank;
 	private int nofVisits;
-	private int moneyDeposited;
+	/** Only written by the courier's own thread, read by the auditor while it runs */
+	private volatile long moneyDeposited;
+	/** When to send the collected deposits to the bank */
+	private final FlushPolicy flushPolicy;
+	/** Picks the account of every deposit, or null to use the night safe */
+	private final AccountSelector selector;
+
+	public Courier(int id, int nofVisits, Bank bank) {
+		this(id, nofVisits, bank, FlushPolicy.UNBATCHED);
+	}
+
+	public Courier(int id, int nofVisits, Bank bank, FlushPolicy flushPolicy) {
+		this(id, nofVisits, bank, flushPolicy, null);
+	}
 
-	public Courier(int nofVisits, Bank bank) {
+	/**
+	 * @param selector	Picks the account of every deposit, or null to use the night safe.
+	 */
+	public Courier(int id, int nofVisits, Bank bank, FlushPolicy flushPolicy, AccountSelector selector) {
+		this.id = id;
 		this.nofVisits = nofVisits;
 		this.bank = bank;
+		this.flushPolicy = flushPolicy;
+		this.selector = selector;
 	}
 
 	/**
 	 * Visit the bank nofVisits times, and each time
-	 * deposit between 50 and 149 dollars.
+	 * deposit between 50 and 149 dollars, in the night safe or
+	 * in an account picked by the selector.
+	 * Deposits are collected and sent to the bank in batches,
+	 * as the flush policy decides.
 	 * Keep records of how much we have deposited, as the
 	 * bank has been known to keep faulty records.
+	 * If a deposit fails, tell the bank and stop.
 	 */
 	@Override
 	public void run () {
-		for(int i = 0; i < nofVisits; i++) {
-			int sum = 50+(int)(Math.random()*100);
-            // Critical region of courier
-			synchronized (this){
-				bank.depositMoney(sum);
+		try {
+			makeDeposits();
+		} catch(RuntimeException e) {
+			bank.courierFailed(e);
+		} finally {
+			bank.courierDone();
+		}
+	}
+
+	private void makeDeposits() {
+		if(flushPolicy.getBatchSize() == 1) {
+			for(int i = 0; i < nofVisits; i++) {
+				int sum = ThreadLocalRandom.current().nextInt(50, 150);
+				// The bank is thread safe, and the record is our own
+				if(selector == null) {
+					bank.depositMoney(id, sum);
+				} else {
+					bank.depositMoney(id, selector.next(), sum);
+				}
 				moneyDeposited += sum;
 			}
+		} else {
+			int[] batch = new int[flushPolicy.getBatchSize()];
+			int[] accounts = selector == null ? null : new int[batch.length];
+			int count = 0;
+			long amount = 0;
+			for(int i = 0; i < nofVisits; i++) {
+				int sum = ThreadLocalRandom.current().nextInt(50, 150);
+				if(accounts != null) {
+					accounts[count] = selector.next();
+				}
+				batch[count++] = sum;
+				amount += sum;
+				if(flushPolicy.shouldFlush(count, amount)) {
+					depositBatch(batch, accounts, count);
+					moneyDeposited += amount;
+					count = 0;
+					amount = 0;
+				}
+			}
+			// Flush what is left before reporting that we are done
+			if(count > 0) {
+				depositBatch(batch, accounts, count);
+				moneyDeposited += amount;
+			}
+		}
+	}
 
+	private void depositBatch(int[] batch, int[] accounts, int count) {
+		if(accounts == null) {
+			bank.depositBatch(id, batch, count);
+		} else {
+			bank.depositBatch(id, accounts, batch, count);
 		}
-		bank.courierDone();
-    }
+	}
 
 
-	public int getAmountDeposited() {
+	public long getAmountDeposited() {
 		return moneyDeposited;
 	}
+
+	public int getId() {
+		return id;
+	}
 }
@@ -0,0 +1,421 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A write-ahead journal of the deposits made in the bank, so the money in the
+ * night safe and the vault survives a crash.
+ *
+ * Every deposit is appended as a fixed-size record of RECORD_SIZE bytes: the
+ * courier ID (int), the amount (int) and the sequence number (long), numbered
+ * from 1 without gaps. The records go to memory-mapped segment files of
+ * SEGMENT_SIZE bytes in the journal directory, named journal-000000.dat and up.
+ *
+ * A deposit only returns once its record is forced to disk. Forcing is done by
+ * a flusher thread with group commit: it waits until groupSize records are
+ * waiting, or until the flush interval has passed since it saw the first one,
+ * and then forces them all with one force() per segment. Records appended
+ * while a force is in progress make up the next group. With fewer couriers than
+ * the group size, each group waits the full flush interval.
+ *
+ * A deposit is appended to the journal before it is put in the ledger, under
+ * the same lock, so the journal holds the deposits in the order the ledger saw
+ * them, and a deposit the journal could not take never reaches the ledger. Opening a
+ * journal that already has records replays them into the given ledger, in
+ * order. For the ledgers with a single night safe this rebuilds the night safe
+ * and the vault exactly. The striped and adder ledgers only come close to a
+ * single night safe, so for them only the total is rebuilt exactly.
+ *
+ * Recovery replays records until the first one whose sequence number does not
+ * follow the one before, and clears whatever follows before new records are
+ * appended. Every deposit confirmed to a courier was forced, so it is
+ * recovered. Records appended but not yet forced are recovered as well if they
+ * reached the file, as they do when only the program crashes, so recovery may
+ * hold deposits a courier was never told were made. A record torn by a crash
+ * of the machine ends the replay, and so do all records after it.
+ *
+ * If forcing fails, the journal fails for good: the deposits waiting for the
+ * force and all later ones throw UncheckedIOException.
+ */
+public class DepositJournal implements Closeable {
+	/** The size of a record: courier ID, amount and sequence number */
+	public static final int RECORD_SIZE = 16;
+	/** The size of a segment file, a whole number of records */
+	public static final int SEGMENT_SIZE = 1 << 24;
+
+	private final File directory;
+	private final int groupSize;
+	private final long flushIntervalNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Signalled for the first record of a group, when the group is full, and on close */
+	private final Condition flushNeeded = lock.newCondition();
+	/** Signalled when the flusher has forced a group */
+	private final Condition flushed = lock.newCondition();
+
+	/** The segment records are appended to */
+	private MappedByteBuffer segment;
+	private int segmentIndex;
+	/** Where the next record goes in the segment */
+	private int position;
+	/** Full segments not yet forced */
+	private final List<MappedByteBuffer> filledSegments = new ArrayList<>();
+	/** Segments mapped in advance for the records of a batch, taken in order */
+	private final List<MappedByteBuffer> reservedSegments = new ArrayList<>();
+	/** The sequence number of the last record appended */
+	private long lastSequence;
+	/** The sequence number of the last record forced to disk */
+	private long durableSequence;
+	private boolean closed;
+	/** Why forcing failed, or null if it has not */
+	private UncheckedIOException failure;
+	private long nofForces;
+
+	private final long nofRecoveredDeposits;
+	private final long recoveredAmount;
+
+	private final Thread flusher;
+
+	/**
+	 * Opens the journal in the given directory, creating it if there is none.
+	 * Deposits already in the journal are replayed into the ledger first.
+	 * @param groupSize				Force as soon as this many records are waiting, at least 1.
+	 * @param flushIntervalMicros	Force at the latest this long after the first waiting record, or 0
+	 *								to force whatever is waiting as soon as the last force is done.
+	 * @param ledger				The ledger to replay the journal into.
+	 */
+	public DepositJournal(File directory, int groupSize, long flushIntervalMicros, Ledger ledger) throws IOException {
+		if(groupSize < 1 || flushIntervalMicros < 0) {
+			throw new IllegalArgumentException("Group size must be at least 1 and the flush interval not negative");
+		}
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can not create the journal directory "+directory);
+		}
+		this.directory = directory;
+		this.groupSize = groupSize;
+		this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros);
+
+		// Replay the records, segment by segment, until the first one out of sequence
+		long amount = 0;
+		int index = 0;
+		MappedByteBuffer last = null;
+		int end = 0;
+		while(segmentFile(index).exists()) {
+			last = map(index);
+			end = 0;
+			while(end < SEGMENT_SIZE && last.getLong(end+8) == lastSequence+1) {
+				ledger.deposit(last.getInt(end+4));
+				amount += last.getInt(end+4);
+				lastSequence++;
+				end += RECORD_SIZE;
+			}
+			if(end < SEGMENT_SIZE) {
+				break;
+			}
+			index++;
+		}
+		nofRecoveredDeposits = lastSequence;
+		recoveredAmount = amount;
+		durableSequence = lastSequence;
+
+		if(last == null || end == SEGMENT_SIZE) {
+			// No journal yet, or the last segment is full
+			segmentIndex = last == null ? 0 : index;
+			segment = map(segmentIndex);
+			position = 0;
+		} else {
+			segmentIndex = index;
+			segment = last;
+			position = end;
+		}
+		// Clear what follows the last good record, so a later recovery can not
+		// mistake an old unconfirmed record for a new one
+		for(int i = position; i < SEGMENT_SIZE; i += 8) {
+			segment.putLong(i, 0);
+		}
+		segment.force();
+		for(int i = segmentIndex+1; segmentFile(i).exists(); i++) {
+			if(!segmentFile(i).delete()) {
+				throw new IOException("Can not delete "+segmentFile(i));
+			}
+		}
+
+		flusher = new Thread(this::flushGroups, "journal flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Appends a deposit to the journal and puts the money in the ledger.
+	 * Returns when the record is on disk.
+	 * @param courierId	The courier making the deposit.
+	 * @param amount	The amount to deposit, not negative.
+	 * @throws IllegalStateException	If the journal is closed.
+	 * @throws UncheckedIOException		If the record could not be written or
+	 *									forced. If it could not be written, the
+	 *									ledger is left as it was.
+	 */
+	public void deposit(int courierId, int amount, Ledger ledger) {
+		Ledger.checkAmount(amount);
+		lock.lock();
+		try {
+			checkOpen();
+			reserve(1);
+			append(courierId, amount);
+			ledger.deposit(amount);
+			awaitDurable(1);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends a record for every amount of a batch to the journal and puts the
+	 * batch in the ledger. Returns when all the records are on disk.
+	 * @param courierId	The courier making the deposits.
+	 * @param amounts	The amounts to deposit, not negative.
+	 * @param count		The number of amounts to deposit, from the start of the array.
+	 * @throws IllegalStateException	If the journal is closed.
+	 * @throws UncheckedIOException		If the records could not be written or
+	 *									forced. If they could not be written, none
+	 *									are, and the ledger is left as it was.
+	 */
+	public void depositBatch(int courierId, int[] amounts, int count, Ledger ledger) {
+		Ledger.total(amounts, count);
+		lock.lock();
+		try {
+			checkOpen();
+			reserve(count);
+			for(int i = 0; i < count; i++) {
+				append(courierId, amounts[i]);
+			}
+			ledger.depositBatch(amounts, count);
+			awaitDurable(count);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Maps the segments the given number of records will need beyond the one
+	 * being appended to, so appending them can not fail halfway. Segments
+	 * mapped before a failure stay reserved for the next records. Called with
+	 * the lock held.
+	 */
+	private void reserve(int count) {
+		long room = (long)(SEGMENT_SIZE-position)/RECORD_SIZE
+				+ (long)reservedSegments.size()*(SEGMENT_SIZE/RECORD_SIZE);
+		try {
+			for(; room < count; room += SEGMENT_SIZE/RECORD_SIZE) {
+				reservedSegments.add(map(segmentIndex+reservedSegments.size()+1));
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes a record to the mapped segment, moving on to the next reserved
+	 * segment if it is full. Called with the lock held, after reserve.
+	 */
+	private void append(int courierId, int amount) {
+		if(position == SEGMENT_SIZE) {
+			filledSegments.add(segment);
+			segment = reservedSegments.remove(0);
+			segmentIndex++;
+			position = 0;
+		}
+		segment.putInt(position, courierId);
+		segment.putInt(position+4, amount);
+		// The sequence number goes last, recovery trusts a record once it sees it
+		segment.putLong(position+8, ++lastSequence);
+		position += RECORD_SIZE;
+	}
+
+	/**
+	 * Waits until the flusher has forced the records just appended. Called with the
+	 * lock held, which is given up while waiting so other couriers can join the group.
+	 * The flusher is woken for the first record of a group and when the group is full.
+	 * @param count	The number of records just appended.
+	 * @throws UncheckedIOException	If forcing failed before the records were forced.
+	 */
+	private void awaitDurable(int count) {
+		long sequence = lastSequence;
+		long waiting = sequence-durableSequence;
+		if(waiting == count || waiting >= groupSize) {
+			flushNeeded.signal();
+		}
+		while(durableSequence < sequence) {
+			checkNotFailed();
+			flushed.awaitUninterruptibly();
+		}
+	}
+
+	/**
+	 * The flusher thread: waits for a group of records to gather, forces them
+	 * to disk without holding the lock, and wakes up the couriers waiting for
+	 * them. After the journal is closed it forces what is left and stops. If
+	 * forcing fails it records the failure, wakes up the couriers and stops.
+	 */
+	private void flushGroups() {
+		lock.lock();
+		try {
+			while(true) {
+				while(!closed && lastSequence == durableSequence) {
+					flushNeeded.awaitUninterruptibly();
+				}
+				if(lastSequence == durableSequence) {
+					return;
+				}
+				long remaining = flushIntervalNanos;
+				while(!closed && remaining > 0 && lastSequence-durableSequence < groupSize) {
+					try {
+						remaining = flushNeeded.awaitNanos(remaining);
+					} catch(InterruptedException e) {
+						// Not expected, force what there is
+						break;
+					}
+				}
+				long group = lastSequence;
+				List<MappedByteBuffer> toForce = new ArrayList<>(filledSegments);
+				toForce.add(segment);
+				filledSegments.clear();
+				lock.unlock();
+				UncheckedIOException forceFailure = null;
+				try {
+					for(MappedByteBuffer buffer : toForce) {
+						buffer.force();
+					}
+				} catch(UncheckedIOException e) {
+					forceFailure = e;
+				} finally {
+					lock.lock();
+				}
+				if(forceFailure != null) {
+					failure = forceFailure;
+					flushed.signalAll();
+					return;
+				}
+				durableSequence = group;
+				nofForces++;
+				flushed.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void checkOpen() {
+		if(closed) {
+			throw new IllegalStateException("The journal is closed");
+		}
+		checkNotFailed();
+	}
+
+	/**
+	 * Throws the failure of the flusher, if forcing failed. Called with the lock held.
+	 */
+	private void checkNotFailed() {
+		if(failure != null) {
+			throw new UncheckedIOException("The journal could not be forced to disk", failure.getCause());
+		}
+	}
+
+	/**
+	 * Forces the records still waiting and stops the flusher. Deposits made
+	 * after this throw IllegalStateException.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			flushNeeded.signal();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Maps the segment file with the given index, creating it if needed.
+	 * The mapping stays valid after the channel is closed.
+	 */
+	private MappedByteBuffer map(int index) throws IOException {
+		try(FileChannel channel = FileChannel.open(segmentFile(index).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+		}
+	}
+
+	private File segmentFile(int index) {
+		return segmentFile(directory, index);
+	}
+
+	private static File segmentFile(File directory, int index) {
+		return new File(directory, String.format("journal-%06d.dat", index));
+	}
+
+	/**
+	 * Deletes the segment files of the journal in the given directory, so the
+	 * next journal opened there starts empty. Only call when it is not open.
+	 */
+	public static void delete(File directory) throws IOException {
+		for(int i = 0; segmentFile(directory, i).exists(); i++) {
+			if(!segmentFile(directory, i).delete()) {
+				throw new IOException("Can not delete "+segmentFile(directory, i));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of deposits replayed from the journal when it was opened.
+	 */
+	public long getNofRecoveredDeposits() {
+		return nofRecoveredDeposits;
+	}
+
+	/**
+	 * Returns the money replayed from the journal when it was opened.
+	 */
+	public long getRecoveredAmount() {
+		return recoveredAmount;
+	}
+
+	/**
+	 * Returns the number of deposits appended since the journal was opened.
+	 */
+	public long getNofAppendedDeposits() {
+		lock.lock();
+		try {
+			return lastSequence-nofRecoveredDeposits;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of groups forced to disk since the journal was opened.
+	 */
+	public long getNofForces() {
+		lock.lock();
+		try {
+			return nofForces;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
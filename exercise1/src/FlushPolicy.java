@@ -0,0 +1,48 @@
+/**
+ * Decides when a courier sends the deposits it has collected to the bank in
+ * one batch: when it holds batchSize deposits, or when they add up to at least
+ * amountThreshold. A courier always flushes what it holds when it is done.
+ */
+public class FlushPolicy {
+	/** Every deposit is sent to the bank on its own */
+	public static final FlushPolicy UNBATCHED = new FlushPolicy(1, 0);
+
+	private final int batchSize;
+	private final long amountThreshold;
+
+	/**
+	 * @param batchSize			The largest number of deposits in a batch, at least 1.
+	 * @param amountThreshold	Flush when the batch holds at least this much money, or 0 to
+	 *							only flush on the batch size.
+	 */
+	public FlushPolicy(int batchSize, long amountThreshold) {
+		if(batchSize < 1 || amountThreshold < 0) {
+			throw new IllegalArgumentException("Batch size must be at least 1 and the amount threshold not negative");
+		}
+		this.batchSize = batchSize;
+		this.amountThreshold = amountThreshold;
+	}
+
+	/**
+	 * Checks whether a batch should be sent to the bank.
+	 * @param count		The number of deposits in the batch.
+	 * @param amount	The money in the batch.
+	 */
+	public boolean shouldFlush(int count, long amount) {
+		return count >= batchSize || (amountThreshold > 0 && amount >= amountThreshold);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getAmountThreshold() {
+		return amountThreshold;
+	}
+
+	@Override
+	public String toString() {
+		return batchSize == 1 ? "unbatched" :
+				"batches of "+batchSize+(amountThreshold > 0 ? " or "+amountThreshold+" dollars" : "");
+	}
+}
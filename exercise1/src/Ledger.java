@@ -0,0 +1,124 @@
+/**
+ * Keeps track of the money in the night safe and in the vault of the bank.
+ * Money is deposited in the night safe, and when the night safe holds more
+ * than TRANSFER_THRESHOLD all of it is transferred to the vault.
+ *
+ * Implementations differ in how they let many couriers deposit at once.
+ * The amounts returned by the getters are only exact when no deposits are
+ * in progress.
+ */
+public interface Ledger {
+	/** A night safe holding more than this moves its money to the vault */
+	int TRANSFER_THRESHOLD = 200;
+
+	/** The names accepted by create */
+	String[] NAMES = {"synchronized", "lock", "fair-lock", "stamped", "atomic", "adder", "striped", "seqlock"};
+
+	/**
+	 * Creates the ledger with the given name.
+	 * @throws IllegalArgumentException	If there is no ledger with that name.
+	 */
+	static Ledger create(String name) {
+		switch(name) {
+			case "synchronized": return new SynchronizedLedger();
+			case "lock": return new LockLedger(false);
+			case "fair-lock": return new LockLedger(true);
+			case "stamped": return new StampedLedger();
+			case "atomic": return new AtomicLedger();
+			case "adder": return new AdderLedger();
+			case "striped": return new StripedLedger();
+			case "seqlock": return new SeqlockLedger();
+			default: throw new IllegalArgumentException("Unknown ledger "+name);
+		}
+	}
+
+	/**
+	 * Deposits money in the night safe, transferring the night safe to the
+	 * vault if it holds too much. May be called by many threads at once.
+	 * @param amount	The amount to deposit, not negative.
+	 * @throws IllegalArgumentException	If the amount is negative, see checkAmount.
+	 */
+	void deposit(int amount);
+
+	/**
+	 * Deposits a batch of amounts, with the same result as depositing them one by
+	 * one in order: the night safe is transferred to the vault every time it goes
+	 * over the threshold. Implementations apply the batch in one step if they can.
+	 * @param amounts	The amounts to deposit, not negative.
+	 * @param count		The number of amounts to deposit, from the start of the array.
+	 */
+	default void depositBatch(int[] amounts, int count) {
+		for(int i = 0; i < count; i++) {
+			deposit(amounts[i]);
+		}
+	}
+
+	/**
+	 * Returns the money in the night safe after depositing a batch of amounts one
+	 * by one, starting with the given amount in the night safe. The money that went
+	 * to the vault is the start amount plus the batch total minus the result.
+	 * @param nightSafe	The money in the night safe before the batch.
+	 * @param amounts	The amounts deposited.
+	 * @param count		The number of amounts deposited.
+	 */
+	static long nightSafeAfter(long nightSafe, int[] amounts, int count) {
+		for(int i = 0; i < count; i++) {
+			nightSafe += amounts[i];
+			if(nightSafe > TRANSFER_THRESHOLD) {
+				nightSafe = 0;
+			}
+		}
+		return nightSafe;
+	}
+
+	/**
+	 * Checks that an amount to deposit is not negative. Every ledger calls this
+	 * before depositing, so all of them take the same amounts.
+	 * @throws IllegalArgumentException	If the amount is negative.
+	 */
+	static void checkAmount(int amount) {
+		if(amount < 0) {
+			throw new IllegalArgumentException("Can not deposit a negative amount: "+amount);
+		}
+	}
+
+	/**
+	 * Returns the sum of a batch of amounts, checking that none is negative.
+	 */
+	static long total(int[] amounts, int count) {
+		long total = 0;
+		for(int i = 0; i < count; i++) {
+			checkAmount(amounts[i]);
+			total += amounts[i];
+		}
+		return total;
+	}
+
+	/**
+	 * Returns whether snapshot can be called while couriers deposit.
+	 */
+	default boolean isAuditable() {
+		return false;
+	}
+
+	/**
+	 * Returns a snapshot of the night safe and the vault holding every deposit
+	 * that was done before it was called, each deposit either whole or not at
+	 * all, taken without making depositors wait, so it can be called while
+	 * couriers run. The claimed amount of the snapshot is 0.
+	 * @throws UnsupportedOperationException	If the ledger is not auditable, so it
+	 *			can only be read consistently when no deposits are in progress.
+	 */
+	default AuditSnapshot snapshot() {
+		throw new UnsupportedOperationException("The "+getName()+" ledger can not be audited while couriers deposit");
+	}
+
+	long getNightSafeAmount();
+
+	long getVaultAmount();
+
+	/**
+	 * Returns the name of this ledger, as accepted by create.
+	 */
+	String getName();
+}
@@ -0,0 +1,64 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ledger guarded by a ReentrantLock, either fair (waiting threads get the
+ * lock in arrival order) or unfair (a thread may barge ahead of waiting ones).
+ */
+public class LockLedger implements Ledger {
+	private final ReentrantLock lock;
+	private long nightSafeAmount;
+	private long vaultAmount;
+
+	public LockLedger(boolean fair) {
+		lock = new ReentrantLock(fair);
+	}
+
+	public void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		lock.lock();
+		try {
+			nightSafeAmount += amount;
+			if(nightSafeAmount > TRANSFER_THRESHOLD) {
+				// Transfer the money in the night safe to the vault:
+				vaultAmount += nightSafeAmount;
+				nightSafeAmount = 0;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void depositBatch(int[] amounts, int count) {
+		long total = Ledger.total(amounts, count);
+		lock.lock();
+		try {
+			long after = Ledger.nightSafeAfter(nightSafeAmount, amounts, count);
+			vaultAmount += nightSafeAmount + total - after;
+			nightSafeAmount = after;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getNightSafeAmount() {
+		lock.lock();
+		try {
+			return nightSafeAmount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getVaultAmount() {
+		lock.lock();
+		try {
+			return vaultAmount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public String getName() {
+		return lock.isFair() ? "fair-lock" : "lock";
+	}
+}
@@ -0,0 +1,182 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A striped ledger that can be audited while couriers deposit, without
+ * making them wait, keeping the night safe and the vault of each stripe in
+ * words of their own rather than packed into one like the striped ledger.
+ *
+ * As in the striped ledger, a thread deposits into the night safe of the stripe
+ * picked by its thread ID, and the transfer threshold applies to each stripe
+ * separately. Each stripe keeps its night safe and its vault in separate
+ * words, guarded by a sequence lock. The stripe holds two copies of the amounts, and a deposit writes one
+ * copy after the other, bumping the sequence number before each. While the
+ * sequence number is odd the first copy is being written, so readers use the
+ * second, and while it is even they use the first.
+ *
+ * A depositor takes a stripe with a compare-and-set on the stripe's lock word,
+ * and moves on to the next stripe if another depositor has it, so depositors
+ * never wait for each other. A reader never writes: it reads the sequence
+ * number, the copy it points to and the sequence number again, and only reads
+ * the stripe again if a deposit moved on in between. There is always a copy
+ * not being written, so a reader never waits for a depositor, even one that is
+ * preempted in the middle of a deposit.
+ *
+ * Every deposit updates one stripe, so the sum of the stripes is the result of
+ * some set of whole deposits, including every deposit done before the snapshot
+ * was started. The snapshot is not the bank at a single moment: a deposit into
+ * a stripe already read is left out while a later one into a stripe not yet
+ * read is counted. That is enough to check the books live, as every deposit
+ * is either counted everywhere or nowhere.
+ */
+public class SeqlockLedger implements Ledger {
+	/** The words of a stripe: the lock, the sequence number and two copies of the amounts */
+	private static final int LOCK = 0;
+	private static final int SEQUENCE = 1;
+	private static final int FIRST_COPY = 2;
+	private static final int COPY_SIZE = 2;
+	/** The words of a copy */
+	private static final int NIGHT_SAFE = 0;
+	private static final int VAULT = 1;
+	/** The distance between two stripes in the array, so every stripe has its own cache line */
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray stripes;
+	private final int stripeMask;
+
+	/**
+	 * Creates a ledger with a stripe for every thread the machine can run at once,
+	 * and then some to spread out the collisions.
+	 */
+	public SeqlockLedger() {
+		this(4*Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a ledger with at least the given number of stripes. The number
+	 * is rounded up to a power of two.
+	 */
+	public SeqlockLedger(int nofStripes) {
+		int size = 1;
+		while(size < nofStripes) {
+			size *= 2;
+		}
+		stripes = new AtomicLongArray(size*PADDING);
+		stripeMask = size-1;
+	}
+
+	/**
+	 * Deposits money in the night safe of the calling thread's stripe. If the
+	 * night safe goes over the threshold, its money is
+	 * transferred to the vault. Another stripe is tried when the stripe is taken.
+	 * @param amount	The amount to deposit, not negative.
+	 */
+	public void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		int index = acquire();
+		int copy = index+FIRST_COPY;
+		long safe = stripes.get(copy+NIGHT_SAFE) + amount;
+		long vault = stripes.get(copy+VAULT);
+		if(safe > TRANSFER_THRESHOLD) {
+			// Transfer the money in the night safe to the vault:
+			vault += safe;
+			safe = 0;
+		}
+		write(index, safe, vault);
+	}
+
+	/**
+	 * Deposits a batch in the calling thread's stripe, taking the stripe once.
+	 */
+	public void depositBatch(int[] amounts, int count) {
+		long total = Ledger.total(amounts, count);
+		int index = acquire();
+		int copy = index+FIRST_COPY;
+		long safe = stripes.get(copy+NIGHT_SAFE);
+		long after = Ledger.nightSafeAfter(safe, amounts, count);
+		write(index, after, stripes.get(copy+VAULT) + safe + total - after);
+	}
+
+	/**
+	 * Takes a free stripe, starting with the calling thread's.
+	 * @return	The index of the stripe in the array.
+	 */
+	private int acquire() {
+		int stripe = stripeOf(Thread.currentThread());
+		while(true) {
+			int index = stripe*PADDING;
+			if(stripes.get(index+LOCK) == 0 && stripes.compareAndSet(index+LOCK, 0, 1)) {
+				return index;
+			}
+			stripe = (stripe+1) & stripeMask;
+		}
+	}
+
+	/**
+	 * Writes the new amounts of a taken stripe to both copies, one after the other,
+	 * and lets the stripe go. The ordered writes keep every amount visible to a
+	 * reader that sees the sequence number written after it.
+	 */
+	private void write(int index, long safe, long vault) {
+		long sequence = stripes.get(index+SEQUENCE);
+		for(int c = 0; c < 2; c++) {
+			// Readers move to the other copy
+			stripes.lazySet(index+SEQUENCE, ++sequence);
+			int copy = index+FIRST_COPY+c*COPY_SIZE;
+			stripes.lazySet(copy+NIGHT_SAFE, safe);
+			stripes.lazySet(copy+VAULT, vault);
+		}
+		stripes.lazySet(index+LOCK, 0);
+	}
+
+	/**
+	 * Returns the money in all stripes, each stripe read consistently, without
+	 * making depositors wait. Cheap enough to call a thousand times a second.
+	 */
+	@Override
+	public AuditSnapshot snapshot() {
+		long safe = 0;
+		long vault = 0;
+		int retries = 0;
+		for(int stripe = 0; stripe <= stripeMask; stripe++) {
+			int index = stripe*PADDING;
+			while(true) {
+				long sequence = stripes.get(index+SEQUENCE);
+				// Odd: the first copy is being written, read the second
+				int copy = index+FIRST_COPY+(int)(sequence & 1)*COPY_SIZE;
+				long stripeSafe = stripes.get(copy+NIGHT_SAFE);
+				long stripeVault = stripes.get(copy+VAULT);
+				if(stripes.get(index+SEQUENCE) == sequence) {
+					safe += stripeSafe;
+					vault += stripeVault;
+					break;
+				}
+				retries++;
+			}
+		}
+		return new AuditSnapshot(safe, vault, retries);
+	}
+
+	public boolean isAuditable() {
+		return true;
+	}
+
+	public long getNightSafeAmount() {
+		return snapshot().getNightSafeAmount();
+	}
+
+	public long getVaultAmount() {
+		return snapshot().getVaultAmount();
+	}
+
+	public String getName() {
+		return "seqlock";
+	}
+
+	/**
+	 * Spreads thread IDs, which are usually consecutive, over the stripes.
+	 */
+	private int stripeOf(Thread thread) {
+		long h = thread.getId() * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & stripeMask;
+	}
+}
@@ -0,0 +1,71 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A ledger guarded by a StampedLock. Deposits take the write lock, and
+ * readers use optimistic reads, retrying under the read lock if a deposit
+ * got in the way.
+ */
+public class StampedLedger implements Ledger {
+	private final StampedLock lock = new StampedLock();
+	private long nightSafeAmount;
+	private long vaultAmount;
+
+	public void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		long stamp = lock.writeLock();
+		try {
+			nightSafeAmount += amount;
+			if(nightSafeAmount > TRANSFER_THRESHOLD) {
+				// Transfer the money in the night safe to the vault:
+				vaultAmount += nightSafeAmount;
+				nightSafeAmount = 0;
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public void depositBatch(int[] amounts, int count) {
+		long total = Ledger.total(amounts, count);
+		long stamp = lock.writeLock();
+		try {
+			long after = Ledger.nightSafeAfter(nightSafeAmount, amounts, count);
+			vaultAmount += nightSafeAmount + total - after;
+			nightSafeAmount = after;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public long getNightSafeAmount() {
+		long stamp = lock.tryOptimisticRead();
+		long result = nightSafeAmount;
+		if(!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = nightSafeAmount;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return result;
+	}
+
+	public long getVaultAmount() {
+		long stamp = lock.tryOptimisticRead();
+		long result = vaultAmount;
+		if(!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = vaultAmount;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return result;
+	}
+
+	public String getName() {
+		return "stamped";
+	}
+}
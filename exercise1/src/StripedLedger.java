@@ -0,0 +1,158 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free ledger of the money in the night safe and in the vault.
+ *
+ * The night safe is split into stripes, and a thread deposits into the stripe
+ * picked by its thread ID, so couriers running on different cores rarely touch
+ * the same counter. Each stripe is one word, updated with compare-and-set, that
+ * holds both the money in the stripe's night safe (the low bits) and the total
+ * amount ever deposited through the stripe (the high bits). The money the
+ * stripe has transferred to the vault is the difference between the two, so a
+ * deposit and the transfer to the vault it may cause are a single atomic step,
+ * and no money is ever in transit.
+ *
+ * When the night safe of a stripe goes over the transfer threshold, all its money
+ * is transferred to the vault, as in the original bank. The threshold applies
+ * to each stripe separately.
+ */
+public class StripedLedger implements Ledger {
+	/** The number of low bits holding the night safe amount of a stripe, which never exceeds the threshold */
+	private static final int SAFE_BITS = 8;
+	private static final long SAFE_MASK = (1L << SAFE_BITS) - 1;
+	/** The distance between two stripes in the array, so every stripe has its own cache line */
+	private static final int PADDING = 8;
+
+	/** The stripes, one packed word every PADDING elements */
+	private final AtomicLongArray stripes;
+	private final int stripeMask;
+
+	/**
+	 * Creates a ledger with a stripe for every thread the machine can run at once,
+	 * and then some to spread out the collisions.
+	 */
+	public StripedLedger() {
+		this(4*Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a ledger with at least the given number of stripes. The number
+	 * is rounded up to a power of two.
+	 */
+	public StripedLedger(int nofStripes) {
+		int size = 1;
+		while(size < nofStripes) {
+			size *= 2;
+		}
+		stripes = new AtomicLongArray(size*PADDING);
+		stripeMask = size-1;
+	}
+
+	/**
+	 * Deposits money in the night safe of the calling thread's stripe. If the night
+	 * safe goes over the threshold, its money is transferred to the vault in the
+	 * same atomic step. Another stripe is tried when the stripe is contended.
+	 * @param amount	The amount to deposit, not negative.
+	 */
+	public void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		int stripe = stripeOf(Thread.currentThread());
+		while(true) {
+			int index = stripe*PADDING;
+			long old = stripes.get(index);
+			long safe = (old & SAFE_MASK) + amount;
+			if(safe > TRANSFER_THRESHOLD) {
+				// Transfer the money in the night safe to the vault:
+				safe = 0;
+			}
+			long deposited = (old >>> SAFE_BITS) + amount;
+			if(stripes.compareAndSet(index, old, deposited << SAFE_BITS | safe)) {
+				return;
+			}
+			stripe = (stripe+1) & stripeMask;
+		}
+	}
+
+	/**
+	 * Deposits a batch in the calling thread's stripe. The batch is replayed
+	 * against the stripe's night safe and applied with a single compare-and-set,
+	 * so a batch costs one atomic operation however many deposits it holds.
+	 */
+	public void depositBatch(int[] amounts, int count) {
+		long total = Ledger.total(amounts, count);
+		int stripe = stripeOf(Thread.currentThread());
+		while(true) {
+			int index = stripe*PADDING;
+			long old = stripes.get(index);
+			long safe = Ledger.nightSafeAfter(old & SAFE_MASK, amounts, count);
+			long deposited = (old >>> SAFE_BITS) + total;
+			if(stripes.compareAndSet(index, old, deposited << SAFE_BITS | safe)) {
+				return;
+			}
+			stripe = (stripe+1) & stripeMask;
+		}
+	}
+
+	/**
+	 * Returns the money in the night safes of all stripes. The sum is only exact
+	 * when no deposits are in progress.
+	 */
+	public long getNightSafeAmount() {
+		long result = 0;
+		for(int i = 0; i <= stripeMask; i++) {
+			result += stripes.get(i*PADDING) & SAFE_MASK;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the money transferred to the vault by all stripes. The sum is only
+	 * exact when no deposits are in progress.
+	 */
+	public long getVaultAmount() {
+		long result = 0;
+		for(int i = 0; i <= stripeMask; i++) {
+			long stripe = stripes.get(i*PADDING);
+			result += (stripe >>> SAFE_BITS) - (stripe & SAFE_MASK);
+		}
+		return result;
+	}
+
+	public boolean isAuditable() {
+		return true;
+	}
+
+	/**
+	 * Returns the money in all stripes. A stripe is a single word, so every
+	 * stripe is read with whole deposits only, and a reader never waits or
+	 * retries. A deposit into a stripe already read is left out, as in the
+	 * seqlock ledger.
+	 */
+	@Override
+	public AuditSnapshot snapshot() {
+		long safe = 0;
+		long deposited = 0;
+		for(int i = 0; i <= stripeMask; i++) {
+			long stripe = stripes.get(i*PADDING);
+			safe += stripe & SAFE_MASK;
+			deposited += stripe >>> SAFE_BITS;
+		}
+		return new AuditSnapshot(safe, deposited-safe, 0);
+	}
+
+	public String getName() {
+		return "striped";
+	}
+
+	public int getNofStripes() {
+		return stripeMask+1;
+	}
+
+	/**
+	 * Spreads thread IDs, which are usually consecutive, over the stripes.
+	 */
+	private int stripeOf(Thread thread) {
+		long h = thread.getId() * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & stripeMask;
+	}
+}
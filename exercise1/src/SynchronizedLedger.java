@@ -0,0 +1,36 @@
+/**
+ * A ledger guarded by its own monitor. Every deposit holds the lock.
+ */
+public class SynchronizedLedger implements Ledger {
+	private long nightSafeAmount;
+	private long vaultAmount;
+
+	public synchronized void deposit(int amount) {
+		Ledger.checkAmount(amount);
+		nightSafeAmount += amount;
+		if(nightSafeAmount > TRANSFER_THRESHOLD) {
+			// Transfer the money in the night safe to the vault:
+			vaultAmount += nightSafeAmount;
+			nightSafeAmount = 0;
+		}
+	}
+
+	public synchronized void depositBatch(int[] amounts, int count) {
+		long total = Ledger.total(amounts, count);
+		long after = Ledger.nightSafeAfter(nightSafeAmount, amounts, count);
+		vaultAmount += nightSafeAmount + total - after;
+		nightSafeAmount = after;
+	}
+
+	public synchronized long getNightSafeAmount() {
+		return nightSafeAmount;
+	}
+
+	public synchronized long getVaultAmount() {
+		return vaultAmount;
+	}
+
+	public String getName() {
+		return "synchronized";
+	}
+}
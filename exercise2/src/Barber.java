@@ -1,3 +1,5 @@
+import java.util.concurrent.ThreadFactory;
+
 /**
  * This class implements the barber's part of the
  * Barbershop thread synchronization example.
@@ -10,20 +12,23 @@ public class Barber implements Runnable {
 	 * @param queue		The customer queue.
 	 * @param gui		The GUI.
 	 * @param pos		The position of this barber's chair
+	 * @param metrics	Where to record the customers served.
 	 */
 
 	private final CustomerQueue customerQueue;
 	private final Gui gui;
+	private final ShopMetrics metrics;
 	private Thread thread;
 	// Keep track over the number of each barber
 	// This will be increased each time a barber is created
     private final int pos;
 
 
-	public Barber(CustomerQueue queue, Gui gui, int pos) {
+	public Barber(CustomerQueue queue, Gui gui, int pos, ShopMetrics metrics) {
 		this.gui = gui;
 		this.customerQueue = queue;
 		this.pos = pos;
+		this.metrics = metrics;
 	}
 
 	/**
@@ -32,16 +37,19 @@ public class Barber implements Runnable {
 	 */
 	@Override
 	public void run(){
-	    while(true){
+	    while(!Thread.currentThread().isInterrupted()){
 	     gui.barberIsSleeping(pos);
-             Customer customer = customerQueue.next();
+             Customer customer = customerQueue.next(pos);
+             customer.markHaircutStarted();
 	     gui.barberIsAwake(pos);
 	     gui.fillBarberChair(pos, customer);
-             gui.println(String.format("Barber #%s got customer. ", pos));
+             Log.info("Barber #{} got customer {}", pos, customer.getCustomerID());
 	     
 	     	int millis =Globals.barberWork + (int) (Math.random() * (Constants.MAX_BARBER_WORK - Constants.MIN_BARBER_WORK));
 	
 	sleep(millis);
+	customer.markHaircutEnded();
+	metrics.customerServed(customer);
 	gui.emptyBarberChair(pos);
 	gui.barberIsSleeping(pos);
 	sleep(millis);
@@ -54,31 +62,55 @@ public class Barber implements Runnable {
 	 * Starts the barber running as a separate thread.
 	 */
 	public void startThread() {
-		thread = new Thread(this);
+		startThread(Thread::new);
+	}
+
+	/**
+	 * Starts the barber running on a thread made by the given factory.
+	 */
+	public void startThread(ThreadFactory factory) {
+		thread = factory.newThread(this);
 		thread.start();
 	}
 
 	/**
-	 * Stops the barber thread.
+	 * Stops the barber thread, interrupting it if it is sleeping. A barber
+	 * waiting for a customer stops when it gets one, so waits no longer than
+	 * STOP_TIMEOUT for it.
 	 */
 	public void stopThread() {
+		interruptThread();
+		joinThread(Constants.STOP_TIMEOUT);
+	}
+
+	/**
+	 * Asks the barber thread to stop, without waiting for it.
+	 */
+	public void interruptThread() {
+		thread.interrupt();
+	}
+
+	/**
+	 * Waits for the barber thread to stop.
+	 * @param millis	The maximum number of milliseconds to wait, at least 1.
+	 */
+	public void joinThread(long millis) {
 		try {
-			thread.join();
+			thread.join(millis);
 		} catch (InterruptedException e) {
-			System.err.printf("Could not stop barber thread number %s.", pos);
-			gui.println("Barber interrupted from sleep");
+			Log.warning("Could not stop barber thread number {}", pos);
 		}
 	}
 
 
 	private void sleep(int millis){
 		try {
-            System.out.printf("Barber sleeping for %d millis\n", millis);
-			Thread.sleep(millis);
-			
-        gui.barberIsAwake(pos);
+			Log.debug("Barber #{} sleeping for {} millis", pos, millis);
+			SimulationClock.sleep(millis);
+			gui.barberIsAwake(pos);
 		} catch (InterruptedException e) {
-			System.err.println("Could not sleep thread!");
+			// Being stopped
+			Thread.currentThread().interrupt();
 		}
 	}
 	// Add more methods as needed
@@ -0,0 +1,137 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The people of a barbershop: any number of doormen bringing customers into
+ * one customer queue, and any number of barbers serving them, each running on
+ * a thread of its own. The GUI only has room for the first NOF_BARBERS
+ * barbers and NOF_CHAIRS lounge chairs, and shows just those, but the
+ * barbershop itself can be far larger, with tens of thousands of barbers when
+ * they run on virtual threads.
+ *
+ * A virtual thread waiting in a synchronized block holds on to the platform
+ * thread carrying it, up to Java 23. So with the monitor queue, enough idle
+ * virtual barbers take every carrier, and the doormen never run, which is why
+ * BarbershopGui refuses that combination on those versions.
+ */
+public class Barbershop {
+	/** The names of the thread modes accepted by threadFactory */
+	public static final String[] THREAD_MODES = {"platform", "virtual"};
+
+	private final CustomerQueue queue;
+	private final Doorman[] doormen;
+	private final Barber[] barbers;
+	private final ShopMetrics metrics;
+
+	/**
+	 * Creates a barbershop.
+	 * @param queue			The customer queue.
+	 * @param gui			The GUI, told about all doormen and barbers.
+	 * @param nofDoormen	The number of doormen, at least 1.
+	 * @param nofBarbers	The number of barbers, at least 1.
+	 * @param policy		What the doormen do with customers when the lounge is full.
+	 */
+	public Barbershop(CustomerQueue queue, Gui gui, int nofDoormen, int nofBarbers, OverloadPolicy policy) {
+		if(nofDoormen < 1 || nofBarbers < 1) {
+			throw new IllegalArgumentException("A barbershop needs at least one doorman and one barber");
+		}
+		this.queue = queue;
+		metrics = new ShopMetrics(nofBarbers);
+		doormen = new Doorman[nofDoormen];
+		for(int i = 0; i < nofDoormen; i++) {
+			doormen[i] = new Doorman(queue, gui, metrics, policy);
+		}
+		barbers = new Barber[nofBarbers];
+		for(int i = 0; i < nofBarbers; i++) {
+			barbers[i] = new Barber(queue, gui, i, metrics);
+		}
+	}
+
+	/**
+	 * Starts the barbers, then the doormen, on threads made by the given factory.
+	 */
+	public void start(ThreadFactory factory) {
+		for(Barber barber : barbers) {
+			barber.startThread(factory);
+		}
+		for(Doorman doorman : doormen) {
+			doorman.startThread(factory);
+		}
+	}
+
+	/**
+	 * Asks all doormen and barbers to stop, and waits no longer than
+	 * STOP_TIMEOUT in total for them. Barbers waiting for customers that will
+	 * never come are left waiting.
+	 */
+	public void stop() {
+		for(Doorman doorman : doormen) {
+			doorman.interruptThread();
+		}
+		for(Barber barber : barbers) {
+			barber.interruptThread();
+		}
+		long deadline = System.nanoTime() + Constants.STOP_TIMEOUT*1000000L;
+		for(Doorman doorman : doormen) {
+			doorman.joinThread(Math.max(1, (deadline-System.nanoTime())/1000000));
+		}
+		for(Barber barber : barbers) {
+			barber.joinThread(Math.max(1, (deadline-System.nanoTime())/1000000));
+		}
+	}
+
+	/**
+	 * Returns the metrics of this barbershop, updated as it runs.
+	 */
+	public ShopMetrics getMetrics() {
+		return metrics;
+	}
+
+	public CustomerQueue getQueue() {
+		return queue;
+	}
+
+	public int getNofDoormen() {
+		return doormen.length;
+	}
+
+	public int getNofBarbers() {
+		return barbers.length;
+	}
+
+	/**
+	 * Returns whether a virtual thread waiting in a synchronized block lets go
+	 * of its carrier thread, as it does from Java 24.
+	 */
+	public static boolean virtualThreadsCanWaitInMonitors() {
+		String version = System.getProperty("java.specification.version");
+		try {
+			return !version.startsWith("1.") && Integer.parseInt(version) >= 24;
+		} catch(NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a factory for the threads of the given mode: platform, a thread
+	 * of the operating system for everyone, or virtual, a virtual thread for
+	 * everyone. Virtual threads came with Java 21, and the sources are kept at
+	 * Java 8, so they are looked up by reflection.
+	 * @throws IllegalArgumentException		If there is no thread mode with that name.
+	 * @throws UnsupportedOperationException	If the JVM has no virtual threads.
+	 */
+	public static ThreadFactory threadFactory(String mode) {
+		switch(mode) {
+			case "platform": return Thread::new;
+			case "virtual":
+				try {
+					Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+					Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+					return (ThreadFactory) factory.invoke(builder);
+				} catch (ReflectiveOperationException e) {
+					throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+				}
+			default: throw new IllegalArgumentException("Unknown thread mode "+mode);
+		}
+	}
+}
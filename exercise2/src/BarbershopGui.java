@@ -2,6 +2,8 @@ import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
 import javax.swing.event.*;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class displays a GUI for the Barbershop example, and also contains the
@@ -11,6 +13,23 @@ import javax.swing.event.*;
  * It should not be necessary to edit this class (but feel free to do so if you wish).
  */
 public class BarbershopGui extends JFrame implements Gui, ChangeListener {
+	private static final String USAGE =
+			"Usage: java BarbershopGui [options]\n" +
+			"  --queue <name>        Customer queue, of "+String.join(", ", CustomerQueue.NAMES)+" (default ring)\n" +
+			"  --speedup <x|max>     Run x times faster than real time, or max to skip all sleeps (default 1)\n" +
+			"  --headless            Run without a window, counting customers served and waiting\n" +
+			"  --seconds <n>         How long a headless run lasts (default 10)\n" +
+			"  --capacity <n>        Lounge chairs (default "+Constants.NOF_CHAIRS+", the first "+Constants.NOF_CHAIRS+" are shown)\n" +
+			"  --doormen <n>         Doormen (default 1)\n" +
+			"  --barbers <n>         Barbers (default "+Constants.NOF_BARBERS+", the first "+Constants.NOF_BARBERS+" are shown)\n" +
+			"  --overload <policy>   What the doormen do when the lounge is full, of "+String.join(", ", OverloadPolicy.NAMES)+" (default block)\n" +
+			"  --overload-timeout <ms>\n" +
+			"                        How long the timeout policy waits for a chair, in barbershop time (default 1000)\n" +
+			"  --threads <mode>      platform (a thread of the operating system for everyone) or\n" +
+			"                        virtual (a virtual thread for everyone, needs Java 21) (default platform)\n" +
+			"  --log <level>         debug, info, warning or off (default info, warning when headless)\n" +
+			"  --console             Also log to the console, which a headless run always does";
+
 	/** Various images used by the GUI */
 	public static Image tableImage;
 	public static Image deskImage;
@@ -31,10 +50,14 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	/** The sliders controlling the speeds of different tasks */
 	private JSlider barberSleepSlider, barberWorkSlider, doormanSleepSlider;
 
-	/** A reference to the doorman */
-	private Doorman doorman;
-	/** An array of references to the barbers */
-	private Barber barbers[];
+	/** The doormen and barbers */
+	private Barbershop shop;
+	/** What to show next frame, written by the doormen and barbers */
+	private final GuiSnapshot snapshot = new GuiSnapshot();
+	/** Shows the snapshot FRAME_RATE times a second */
+	private Timer frameTimer;
+	/** The number of lines in the text area */
+	private int nofDisplayedLines;
 
 	/**
 	 * Creates a new GUI.
@@ -44,6 +67,8 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 		super(title);
 		loadImages();
 		placeComponents();
+		frameTimer = new Timer(1000/Constants.FRAME_RATE, e -> showFrame());
+		frameTimer.start();
 		setSize(706,427);
 		setResizable(false);
 		// Add an anonymous WindowListener which calls quit() when the window is closing
@@ -61,26 +86,78 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * threads.
 	 */
 	public void startSimulation() {
-		CustomerQueue queue = new CustomerQueue(Constants.NOF_CHAIRS, this);
-		doorman = new Doorman(queue, this);
-		doorman.startThread();
-		barbers = new Barber[Constants.NOF_BARBERS];
-		for(int i = 0; i < Constants.NOF_BARBERS; i++) {
-			barbers[i] = new Barber(queue, this, i);
-			barbers[i].startThread();
+		startSimulation("ring");
+	}
+
+	/**
+	 * Starts the simulation like startSimulation(), with the given kind of customer queue.
+	 * @param queueName	The name of the queue, one of CustomerQueue.NAMES.
+	 */
+	public void startSimulation(String queueName) {
+		startSimulation(queueName, Constants.NOF_CHAIRS, 1, Constants.NOF_BARBERS, OverloadPolicy.create("block", 0),
+				Thread::new);
+	}
+
+	/**
+	 * Starts the simulation with any number of lounge chairs, doormen and
+	 * barbers. Only the first NOF_CHAIRS chairs and NOF_BARBERS barbers are shown.
+	 * @param queueName		The name of the queue, one of CustomerQueue.NAMES.
+	 * @param capacity		The number of lounge chairs.
+	 * @param nofDoormen	The number of doormen.
+	 * @param nofBarbers	The number of barbers.
+	 * @param policy		What the doormen do with customers when the lounge is full.
+	 * @param factory		Makes the threads of the doormen and barbers.
+	 */
+	public void startSimulation(String queueName, int capacity, int nofDoormen, int nofBarbers,
+			OverloadPolicy policy, ThreadFactory factory) {
+		CustomerQueue queue = CustomerQueue.create(queueName, capacity, nofBarbers, this);
+		println("Customers wait in a "+queue.getName()+" queue of "+capacity+" chairs, "+nofDoormen+" doormen, "+
+				nofBarbers+" barbers, "+policy.getName()+" when full.");
+		if(capacity > Constants.NOF_CHAIRS || nofBarbers > Constants.NOF_BARBERS) {
+			println("Showing the first "+Math.min(capacity, Constants.NOF_CHAIRS)+" chairs and "+
+					Math.min(nofBarbers, Constants.NOF_BARBERS)+" barbers.");
 		}
+		shop = new Barbershop(queue, this, nofDoormen, nofBarbers, policy);
+		shop.start(factory);
 	}
 
 	/**
 	 * Stops all threads and exits the program.
 	 */
 	private void quit() {
-		doorman.stopThread();
-		for(int i = 0; i < Constants.NOF_BARBERS; i++)
-			barbers[i].stopThread();
+		shop.stop();
+		shop.getMetrics().print(System.out);
 		System.exit(0);
 	}
 
+	/**
+	 * Shows the changes made to the snapshot since the last frame. Runs on
+	 * the Swing event thread, so it is the only one touching the components.
+	 */
+	private void showFrame() {
+		if(snapshot.showIn(roomPanel)) {
+			roomPanel.repaint();
+		}
+		String lines = snapshot.takeLines();
+		if(lines != null) {
+			display.append(lines);
+			for(int i = 0; i < lines.length(); i++) {
+				if(lines.charAt(i) == '\n') {
+					nofDisplayedLines++;
+				}
+			}
+			if(nofDisplayedLines > Constants.MAX_DISPLAY_LINES) {
+				// Remove the oldest lines, up to the end of the last one removed
+				String text = display.getText();
+				int end = 0;
+				for(; nofDisplayedLines > Constants.MAX_DISPLAY_LINES; nofDisplayedLines--) {
+					end = text.indexOf('\n', end)+1;
+				}
+				display.replaceRange("", 0, end);
+			}
+		}
+	}
+
 	/**
 	 * Loads an image from a file.
 	 * @param tk		The toolkit to be used to load the image.
@@ -196,8 +273,8 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * Outputs a text string to the user.
 	 * @param text	The text to be outputted.
 	 */
-	public synchronized void println(String text) {
-		display.append(text+"\n");
+	public void println(String text) {
+		snapshot.println(text);
 	}
 
 	/**
@@ -206,8 +283,10 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * @param customer	The customer that is sitting in that chair.
 	 */
 	public void fillLoungeChair(int pos, Customer customer) {
-		roomPanel.fillLoungeChair(pos, customer);
-		repaint();
+		if(pos >= Constants.NOF_CHAIRS) {
+			return;
+		}
+		snapshot.fillLoungeChair(pos, customer);
 	}
 
 	/**
@@ -215,8 +294,10 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * @param pos	The position of the chair.
 	 */
 	public void emptyLoungeChair(int pos) {
-		roomPanel.emptyLoungeChair(pos);
-		repaint();
+		if(pos >= Constants.NOF_CHAIRS) {
+			return;
+		}
+		snapshot.emptyLoungeChair(pos);
 	}
 
 	/**
@@ -224,8 +305,10 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * @param pos	The position of the barber chair.
 	 */
 	public void fillBarberChair(int pos, Customer customer) {
-		roomPanel.fillBarberChair(pos, customer);
-		repaint();
+		if(pos >= Constants.NOF_BARBERS) {
+			return;
+		}
+		snapshot.fillBarberChair(pos, customer);
 	}
 
 	/**
@@ -233,8 +316,10 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * @param pos		The position of the barber chair.
 	 */
 	public void emptyBarberChair(int pos) {
-		roomPanel.emptyBarberChair(pos);
-		repaint();
+		if(pos >= Constants.NOF_BARBERS) {
+			return;
+		}
+		snapshot.emptyBarberChair(pos);
 	}
 
 	/**
@@ -242,8 +327,10 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * @param pos	The position of the barber's chair.
 	 */
 	public void barberIsSleeping(int pos) {
-		roomPanel.setBarberSleep(pos, true);
-		repaint();
+		if(pos >= Constants.NOF_BARBERS) {
+			return;
+		}
+		snapshot.setBarberSleep(pos, true);
 	}
 
 	/**
@@ -251,16 +338,102 @@ public class BarbershopGui extends JFrame implements Gui, ChangeListener {
 	 * @param pos	The position of the barber's chair.
 	 */
 	public void barberIsAwake(int pos) {
-		roomPanel.setBarberSleep(pos, false);
-		repaint();
+		if(pos >= Constants.NOF_BARBERS) {
+			return;
+		}
+		snapshot.setBarberSleep(pos, false);
 	}
 
 	/**
 	 * The startup method.
-	 * @param args	Parameters passed to the program from the command line, none expected.
+	 * @param args	Parameters passed to the program from the command line, see USAGE.
 	 */
 	public static void main(String args[]) {
+		String queueName = "ring";
+		boolean headless = false;
+		int seconds = 10;
+		int capacity = Constants.NOF_CHAIRS;
+		int nofDoormen = 1;
+		int nofBarbers = Constants.NOF_BARBERS;
+		ThreadFactory factory = Thread::new;
+		boolean virtualThreads = false;
+		String overload = "block";
+		int overloadTimeout = 1000;
+		OverloadPolicy policy = null;
+		Log.Level logLevel = null;
+		boolean logToConsole = false;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				String flag = args[i];
+				if(flag.equals("--help") || flag.equals("-h")) {
+					exitWithUsage(null);
+				}
+				if(flag.equals("--headless")) {
+					headless = true;
+					continue;
+				}
+				if(flag.equals("--console")) {
+					logToConsole = true;
+					continue;
+				}
+				if(i+1 == args.length) {
+					exitWithUsage("Missing value for "+flag);
+				}
+				String value = args[++i];
+				switch(flag) {
+					case "--queue":
+						if(!Arrays.asList(CustomerQueue.NAMES).contains(value)) {
+							exitWithUsage("Unknown customer queue "+value);
+						}
+						queueName = value;
+						break;
+					case "--speedup":
+						Globals.timeCompression = value.equals("max") ? Double.POSITIVE_INFINITY : Double.parseDouble(value);
+						if(!(Globals.timeCompression > 0)) {
+							exitWithUsage("The speedup must be above 0.");
+						}
+						break;
+					case "--seconds": seconds = Integer.parseInt(value); break;
+					case "--capacity": capacity = Integer.parseInt(value); break;
+					case "--doormen": nofDoormen = Integer.parseInt(value); break;
+					case "--barbers": nofBarbers = Integer.parseInt(value); break;
+					case "--overload": overload = value; break;
+					case "--overload-timeout": overloadTimeout = Integer.parseInt(value); break;
+					case "--threads":
+						factory = Barbershop.threadFactory(value);
+						virtualThreads = value.equals("virtual");
+						break;
+					case "--log": logLevel = Log.Level.valueOf(value.toUpperCase()); break;
+					default: exitWithUsage("Unknown option "+flag);
+				}
+			}
+			if(seconds < 1 || capacity < 1 || nofDoormen < 1 || nofBarbers < 1) {
+				exitWithUsage("All values must be at least 1.");
+			}
+			policy = OverloadPolicy.create(overload, overloadTimeout);
+			if(queueName.equals("monitor") && virtualThreads && !Barbershop.virtualThreadsCanWaitInMonitors()) {
+				exitWithUsage("Idle virtual barbers waiting in the monitor queue hold on to every carrier thread "+
+						"before Java 24, so no customer would ever be served. Use another queue or platform threads.");
+			}
+		} catch(IllegalArgumentException | UnsupportedOperationException e) {
+			exitWithUsage(e.getMessage());
+		}
+
+		if(headless) {
+			Log.start(logLevel == null ? Log.Level.WARNING : logLevel, null, System.out);
+			new HeadlessBarbershop().run(queueName, capacity, nofDoormen, nofBarbers, policy, factory, seconds);
+			System.exit(0);
+		}
 		BarbershopGui gui = new BarbershopGui("Solution to P2");
-		gui.startSimulation();
+		Log.start(logLevel == null ? Log.Level.INFO : logLevel, gui, logToConsole ? System.out : null);
+		gui.startSimulation(queueName, capacity, nofDoormen, nofBarbers, policy, factory);
+	}
+
+	private static void exitWithUsage(String message) {
+		if(message != null) {
+			System.out.println(message);
+		}
+		System.out.println(USAGE);
+		System.exit(message == null ? 0 : 1);
 	}
 }
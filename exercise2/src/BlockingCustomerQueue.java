@@ -0,0 +1,130 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue of customers built on two blocking queues from java.util.concurrent:
+ * one holding the waiting customers, and one holding the free lounge chairs.
+ *
+ * The doorman takes a free chair before seating a customer, which also waits
+ * while all chairs are taken, so the customer queue never holds more customers
+ * than there are chairs, even when it is unbounded. A barber hands the chair
+ * back after the customer leaves it, and only then can the doorman give it to
+ * someone else, so the GUI never shows two customers in one chair. A handoff
+ * costs two queue operations on each side.
+ */
+public class BlockingCustomerQueue implements CustomerQueue {
+	private final String name;
+	private final Gui gui;
+	private final BlockingQueue<Seat> customers;
+	private final BlockingQueue<Integer> freeChairs;
+	private final int capacity;
+
+	/**
+	 * A customer in a lounge chair.
+	 */
+	private static class Seat {
+		final Customer customer;
+		final int chair;
+
+		Seat(Customer customer, int chair) {
+			this.customer = customer;
+			this.chair = chair;
+		}
+	}
+
+	/**
+	 * Creates a new customer queue.
+	 * @param name			The name of the queue, as accepted by CustomerQueue.create.
+	 * @param customers		An empty queue for the waiting customers, holding at least queueLength.
+	 * @param freeChairs	An empty queue for the free chairs, holding at least queueLength.
+	 * @param queueLength	The maximum length of the queue.
+	 * @param gui			A reference to the GUI interface.
+	 */
+	@SuppressWarnings("unchecked")
+	public BlockingCustomerQueue(String name, BlockingQueue<?> customers, BlockingQueue<Integer> freeChairs,
+			int queueLength, Gui gui) {
+		this.name = name;
+		this.gui = gui;
+		this.customers = (BlockingQueue<Seat>) customers;
+		this.freeChairs = freeChairs;
+		this.capacity = queueLength;
+		for(int chair = 0; chair < queueLength; chair++) {
+			freeChairs.add(chair);
+		}
+	}
+
+	public void add(Customer customer) {
+		int chair = takeUninterruptibly(freeChairs);
+		customer.markSeated();
+		gui.fillLoungeChair(chair, customer);
+		customers.add(new Seat(customer, chair));
+	}
+
+	public boolean offer(Customer customer, long timeout, TimeUnit unit) {
+		Integer chair;
+		try {
+			chair = freeChairs.poll(timeout, unit);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		if(chair == null) {
+			return false;
+		}
+		customer.markSeated();
+		gui.fillLoungeChair(chair, customer);
+		customers.add(new Seat(customer, chair));
+		return true;
+	}
+
+	public Customer next() {
+		return leave(takeUninterruptibly(customers));
+	}
+
+	public Customer poll() {
+		Seat seat = customers.poll();
+		return seat == null ? null : leave(seat);
+	}
+
+	/**
+	 * Frees the chair of a customer taken from the queue.
+	 */
+	private Customer leave(Seat seat) {
+		gui.emptyLoungeChair(seat.chair);
+		freeChairs.add(seat.chair);
+		return seat.customer;
+	}
+
+	/**
+	 * Takes the head of a queue, waiting for it if the queue is empty, and
+	 * going on waiting if interrupted.
+	 */
+	private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+		boolean interrupted = false;
+		try {
+			while(true) {
+				try {
+					return queue.take();
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public int size() {
+		return customers.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
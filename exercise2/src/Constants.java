@@ -52,6 +52,14 @@ public abstract class Constants
 	public final static int MIN_DOORMAN_SLEEP = 100;
 	/** The maximum number of milliseconds between each time a new customer arrives */
 	public final static int MAX_DOORMAN_SLEEP = 5900;
+	/** The maximum number of milliseconds to wait for a barber or the doorman to stop */
+	public final static int STOP_TIMEOUT = 1000;
+	/** The number of times per second the GUI is redrawn */
+	public final static int FRAME_RATE = 60;
+	/** The maximum number of lines of text waiting for the next frame, further lines are dropped */
+	public final static int MAX_PENDING_LINES = 1000;
+	/** The number of lines of text kept in the GUI, older lines are removed */
+	public final static int MAX_DISPLAY_LINES = 500;
 
 	// Hides the constructor.
 	private Constants(){}
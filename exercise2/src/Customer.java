@@ -1,5 +1,7 @@
 import java.awt.*;
 import javax.swing.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class implements a customer's part of the Barbershop example.
@@ -8,19 +10,78 @@ import javax.swing.*;
  * It should not be necessary to edit this class (but feel free to do so if you wish).
  */
 public class Customer {
-	/** The ID of the next customer to be created */
-	public static int nextID = 0;
+	/** The ID of the last customer created, shared by all doormen */
+	private static final AtomicInteger lastID = new AtomicInteger();
 	/** The ID of this customer */
 	private int customerID;
 	/** An integer specifying the look of this customer, used by the GUI only */
 	private int customerLook;
+	/** When this customer came to the doorman, from System.nanoTime */
+	private final long arrivedAt;
+	/** When this customer sat down in the lounge */
+	private long seatedAt;
+	/** When a barber started cutting this customer's hair */
+	private long haircutStartedAt;
+	/** When the haircut was done */
+	private long haircutEndedAt;
 
 	/**
 	 * Creates a new customer, giving him a unique ID and a random look.
 	 */
 	public Customer() {
-		customerID = ++nextID;
-		customerLook = (int)(Math.random() * Constants.NOF_CUSTOMER_LOOKS);
+		customerID = lastID.incrementAndGet();
+		customerLook = ThreadLocalRandom.current().nextInt(Constants.NOF_CUSTOMER_LOOKS);
+		arrivedAt = System.nanoTime();
+	}
+
+	/**
+	 * Notes that the customer sits down in the lounge. Called by the customer
+	 * queue before any barber can see the customer.
+	 */
+	public void markSeated() {
+		seatedAt = System.nanoTime();
+	}
+
+	/**
+	 * Notes that a barber starts cutting the customer's hair.
+	 */
+	public void markHaircutStarted() {
+		haircutStartedAt = System.nanoTime();
+	}
+
+	/**
+	 * Notes that the haircut is done.
+	 */
+	public void markHaircutEnded() {
+		haircutEndedAt = System.nanoTime();
+	}
+
+	/**
+	 * Returns when the customer came to the doorman, in System.nanoTime.
+	 */
+	public long getArrivedAt() {
+		return arrivedAt;
+	}
+
+	/**
+	 * Returns when the customer sat down in the lounge, in System.nanoTime.
+	 */
+	public long getSeatedAt() {
+		return seatedAt;
+	}
+
+	/**
+	 * Returns when the haircut started, in System.nanoTime.
+	 */
+	public long getHaircutStartedAt() {
+		return haircutStartedAt;
+	}
+
+	/**
+	 * Returns when the haircut was done, in System.nanoTime.
+	 */
+	public long getHaircutEndedAt() {
+		return haircutEndedAt;
 	}
 
 	/**
@@ -1,60 +1,120 @@
-
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class implements a queue of customers as a circular buffer.
+ * A queue of customers waiting in the lounge chairs, filled by the doorman and
+ * emptied by the barbers. Adding waits while all chairs are taken, and taking
+ * the next customer waits while the lounge is empty. The queue tells the GUI
+ * which chair a customer sits down in and leaves.
+ *
+ * Implementations differ in how the doorman and the barbers wait for each
+ * other, see NAMES and create. For an overloaded barbershop, offer seats a
+ * customer only if a chair frees up in time, and poll lets the doorman turn
+ * away a waiting customer, see OverloadPolicy.
  */
-public class CustomerQueue {
+public interface CustomerQueue {
+	/** The names accepted by create */
+	String[] NAMES = {"monitor", "ring", "array-blocking", "transfer", "lock-free", "stealing-round-robin",
+			"stealing-shortest"};
+
 	/**
-	 * Creates a new customer queue. Make sure to save these variables in the class.
+	 * Creates the queue with the given name:
+	 * monitor, a circular buffer with wait and notifyAll;
+	 * ring, a circular buffer with a lock and separate conditions for full and empty;
+	 * array-blocking, an ArrayBlockingQueue;
+	 * transfer, a LinkedTransferQueue;
+	 * lock-free, a lock-free circular buffer where waiting threads spin, then park;
+	 * stealing-round-robin and stealing-shortest, a deque per barber, filled in
+	 * turn or shortest first, where idle barbers steal from the others.
 	 * @param queueLength	The maximum length of the queue.
+	 * @param nofBarbers	The number of barbers calling next(int).
 	 * @param gui			A reference to the GUI interface.
+	 * @throws IllegalArgumentException	If there is no queue with that name.
 	 */
+	static CustomerQueue create(String name, int queueLength, int nofBarbers, Gui gui) {
+		switch(name) {
+			case "monitor": return new MonitorCustomerQueue(queueLength, gui);
+			case "ring": return new RingCustomerQueue(queueLength, gui);
+			case "array-blocking":
+				return new BlockingCustomerQueue(name, new ArrayBlockingQueue<>(queueLength),
+						new ArrayBlockingQueue<>(queueLength), queueLength, gui);
+			case "transfer":
+				return new BlockingCustomerQueue(name, new LinkedTransferQueue<>(), new LinkedTransferQueue<>(),
+						queueLength, gui);
+			case "lock-free": return new LockFreeCustomerQueue(queueLength, gui);
+			case "stealing-round-robin":
+				return new StealingCustomerQueue(name, queueLength, nofBarbers,
+						StealingCustomerQueue.Dispatch.ROUND_ROBIN, gui);
+			case "stealing-shortest":
+				return new StealingCustomerQueue(name, queueLength, nofBarbers,
+						StealingCustomerQueue.Dispatch.SHORTEST, gui);
+			default: throw new IllegalArgumentException("Unknown customer queue "+name);
+		}
+	}
 
-    private final Gui gui;
-    private final int MAX_QUEUE_LENGTH;
-    private ArrayList<Customer> customerQueue = new ArrayList<>();
+	/**
+	 * Seats a customer in the lounge, waiting for a free chair if all are taken.
+	 * @param customer	The customer arriving.
+	 */
+	void add(Customer customer);
 
-    public CustomerQueue(int queueLength, Gui gui) {
-        this.gui = gui;
-        this.MAX_QUEUE_LENGTH = queueLength;
-	}
+	/**
+	 * Seats a customer in the lounge if a chair is free, or frees up within
+	 * the given time. A thread interrupted while waiting stops waiting, with
+	 * the interrupt flag still set.
+	 * @param customer	The customer arriving.
+	 * @param timeout	How long to wait for a free chair, 0 to not wait at all.
+	 * @param unit		The unit of the timeout.
+	 * @return	Whether the customer was seated.
+	 */
+	boolean offer(Customer customer, long timeout, TimeUnit unit);
+
+	/**
+	 * Takes the customer who has waited the longest, waiting for one
+	 * if the lounge is empty.
+	 * @return	The customer.
+	 */
+	Customer next();
 
-	public synchronized void add(Customer customer) {
-	    while(isFull()){
-		try{
-		    wait();}
-		catch(Exception e){}
-	    }
-        customerQueue.add(customer);
-        gui.fillLoungeChair(customerQueue.size()-1, customer);
-	notifyAll();
+	/**
+	 * Takes the next customer for the given barber, waiting for one if the
+	 * lounge is empty. Queues with a deque per barber need to know who asks,
+	 * the others take the customer who has waited the longest.
+	 * @param barber	The number of the barber, from 0.
+	 * @return	The customer.
+	 */
+	default Customer next(int barber) {
+		return next();
 	}
 
-    public int size(){
-        return customerQueue.size();
-    }
-
-	public synchronized Customer next() {
-	    while(isEmpty()){
-		try{
-		    
-		    wait();}
-		catch(Exception e){}
-	    }
-        gui.emptyLoungeChair(customerQueue.size()-1);
-        Customer customer = customerQueue.remove(0);
-	notifyAll();
-	return customer;
+	/**
+	 * Takes the customer who has waited the longest without waiting, freeing
+	 * the chair like next does.
+	 * @return	The customer, or null if the lounge is empty.
+	 */
+	Customer poll();
+
+	/**
+	 * Returns the number of customers waiting.
+	 */
+	int size();
+
+	/**
+	 * Returns the number of lounge chairs.
+	 */
+	int getCapacity();
+
+	default boolean isEmpty() {
+		return size() == 0;
 	}
 
-    public boolean isEmpty(){
-        return customerQueue.isEmpty();
-    }
+	default boolean isFull() {
+		return size() >= getCapacity();
+	}
 
-    public boolean isFull() {
-        return customerQueue.size() == MAX_QUEUE_LENGTH;
-    }
+	/**
+	 * Returns the name of this queue, as accepted by create.
+	 */
+	String getName();
 }
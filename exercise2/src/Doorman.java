@@ -1,5 +1,6 @@
 
 import java.util.Queue;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class implements the doorman's part of the
@@ -12,14 +13,20 @@ public class Doorman implements Runnable {
 	 * Creates a new doorman. Make sure to save these variables in the class.
 	 * @param queue		The customer queue.
 	 * @param gui		A reference to the GUI interface.
+	 * @param metrics	Where to record the customers seated and turned away.
+	 * @param policy	What to do with customers when the lounge is full.
 	 */
 	private CustomerQueue customerQueue;
 	private final Gui gui;
+	private final ShopMetrics metrics;
+	private final OverloadPolicy policy;
     private Thread thread;
 
-	public Doorman(CustomerQueue queue, Gui gui) { 
+	public Doorman(CustomerQueue queue, Gui gui, ShopMetrics metrics, OverloadPolicy policy) {
 		this.customerQueue = queue;
 		this.gui = gui;
+		this.metrics = metrics;
+		this.policy = policy;
 	}
 
 	/**
@@ -28,11 +35,14 @@ public class Doorman implements Runnable {
 	 */
 	@Override
 	public void run() {
-	    while(true){
-	     gui.println("Doorman waiting for free chair");
+	    while(!Thread.currentThread().isInterrupted()){
+	     Log.debug("Doorman waiting for free chair");
              Customer customer = new Customer();
-             customerQueue.add(customer);
-             gui.println("Doorman was notified of free chair");
+             if(policy.admit(customerQueue, customer, metrics)) {
+                 Log.debug("Doorman was notified of free chair");
+             } else {
+                 Log.debug("Doorman turned customer {} away", customer.getCustomerID());
+             }
               
               sleep();
 	    }
@@ -40,15 +50,43 @@ public class Doorman implements Runnable {
         
 
 	public void startThread() {
-        thread = new Thread(this);
+        startThread(Thread::new);
+	}
+
+	/**
+	 * Starts the doorman running on a thread made by the given factory.
+	 */
+	public void startThread(ThreadFactory factory) {
+        thread = factory.newThread(this);
         thread.start();
 	}
 
+	/**
+	 * Stops the doorman thread, interrupting it if it is sleeping. A doorman
+	 * waiting for a free chair stops when it gets one, so waits no longer than
+	 * STOP_TIMEOUT for it.
+	 */
 	public void stopThread() {
+        interruptThread();
+        joinThread(Constants.STOP_TIMEOUT);
+    }
+
+	/**
+	 * Asks the doorman thread to stop, without waiting for it.
+	 */
+	public void interruptThread() {
+        thread.interrupt();
+	}
+
+	/**
+	 * Waits for the doorman thread to stop.
+	 * @param millis	The maximum number of milliseconds to wait, at least 1.
+	 */
+	public void joinThread(long millis) {
         try {
-            thread.join();
+            thread.join(millis);
         } catch (InterruptedException e) {
-            gui.println("Could not stop doorman thread :O ");
+            Log.warning("Could not stop doorman thread");
         }
     }
 
@@ -58,12 +96,13 @@ public class Doorman implements Runnable {
             int millis = Globals.doormanSleep+
 		(int) (Math.random() * (/*Constants.MAX_DOORMAN_SLEEP*/ - Constants.MIN_DOORMAN_SLEEP));
             //int millis = Globals.doormanSleep;
-            gui.println("Doorman sleeping!");
-            System.out.printf("Size of queue: %s\n", customerQueue.size());
-            System.out.printf("Doorman sleeping for %d millis\n", millis);
-            Thread.sleep(millis);
+            if(Log.isEnabled(Log.Level.DEBUG)) {
+                Log.debug("Doorman sleeping for {} millis, {} customers waiting", millis, customerQueue.size());
+            }
+            SimulationClock.sleep(millis);
         } catch (InterruptedException e) {
-            gui.println("Doorman interrupted from sleep!");
+            // Being stopped
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -1,5 +1,5 @@
 /**
- * Class containing three globally available variables modified by the GUI
+ * Class containing globally available variables modified by the GUI
  * and used by the Barber and Doorman threads.
  *
  * It should not be necessary to edit this class (but feel free to do so if you wish).
@@ -12,4 +12,9 @@ public class Globals
 	public static int barberWork = (Constants.MAX_BARBER_WORK+Constants.MIN_BARBER_WORK)/2;
 	/** The number of milliseconds between each time a new customer arrives */
 	public static int doormanSleep = (Constants.MAX_DOORMAN_SLEEP+Constants.MIN_DOORMAN_SLEEP)/2;
+	/**
+	 * How many times faster than real time the barbershop runs: every sleep is
+	 * divided by it. Infinity removes the sleeps altogether.
+	 */
+	public static volatile double timeCompression = 1;
 }
@@ -0,0 +1,130 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * What the GUI should show: who sits in which chair, which barbers sleep, and
+ * the lines of text not shown yet. The barbers and doormen write it without
+ * locks, each change costing a few atomic writes, and the GUI reads it on the
+ * Swing event thread a number of times per second. Changes between two frames
+ * are coalesced, so a chair filled and emptied in between is never drawn.
+ *
+ * Lines pile up until the next frame takes them. If more than
+ * MAX_PENDING_LINES pile up, further lines are dropped and counted.
+ */
+public class GuiSnapshot {
+	private final AtomicReferenceArray<Customer> loungeChairs = new AtomicReferenceArray<>(Constants.NOF_CHAIRS);
+	private final AtomicReferenceArray<Customer> barberChairs = new AtomicReferenceArray<>(Constants.NOF_BARBERS);
+	/** 1 for a barber sleeping, 0 for one awake */
+	private final AtomicIntegerArray barbersSleeping = new AtomicIntegerArray(Constants.NOF_BARBERS);
+	private final ConcurrentLinkedQueue<String> pendingLines = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger nofPendingLines = new AtomicInteger();
+	private final AtomicLong nofDroppedLines = new AtomicLong();
+	/** Whether a chair or barber changed since the last frame */
+	private volatile boolean changed;
+
+	public void fillLoungeChair(int pos, Customer customer) {
+		loungeChairs.set(pos, customer);
+		markChanged();
+	}
+
+	public void emptyLoungeChair(int pos) {
+		loungeChairs.set(pos, null);
+		markChanged();
+	}
+
+	public void fillBarberChair(int pos, Customer customer) {
+		barberChairs.set(pos, customer);
+		markChanged();
+	}
+
+	public void emptyBarberChair(int pos) {
+		barberChairs.set(pos, null);
+		markChanged();
+	}
+
+	public void setBarberSleep(int pos, boolean sleeping) {
+		barbersSleeping.set(pos, sleeping ? 1 : 0);
+		markChanged();
+	}
+
+	/**
+	 * Flags a change, reading the flag first so that threads changing the
+	 * state between two frames do not all write the same cache line.
+	 */
+	private void markChanged() {
+		if(!changed) {
+			changed = true;
+		}
+	}
+
+	/**
+	 * Adds a line of text to show, or drops it if too many are waiting.
+	 */
+	public void println(String text) {
+		if(nofPendingLines.incrementAndGet() > Constants.MAX_PENDING_LINES) {
+			nofPendingLines.decrementAndGet();
+			nofDroppedLines.incrementAndGet();
+			return;
+		}
+		pendingLines.add(text);
+	}
+
+	/**
+	 * Copies the chairs and barbers to the room panel if any changed since
+	 * the last call. To be called on the Swing event thread.
+	 * @return	Whether anything changed.
+	 */
+	public boolean showIn(RoomPanel room) {
+		if(!changed) {
+			return false;
+		}
+		// Cleared before reading, so a change made while reading is shown next frame
+		changed = false;
+		for(int i = 0; i < Constants.NOF_CHAIRS; i++) {
+			Customer customer = loungeChairs.get(i);
+			if(customer != null) {
+				room.fillLoungeChair(i, customer);
+			} else {
+				room.emptyLoungeChair(i);
+			}
+		}
+		for(int i = 0; i < Constants.NOF_BARBERS; i++) {
+			Customer customer = barberChairs.get(i);
+			if(customer != null) {
+				room.fillBarberChair(i, customer);
+			} else {
+				room.emptyBarberChair(i);
+			}
+			room.setBarberSleep(i, barbersSleeping.get(i) == 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Takes the lines added since the last call, each ending with a newline,
+	 * noting how many were dropped.
+	 * @return	The lines, or null if there are none.
+	 */
+	public String takeLines() {
+		StringBuilder lines = null;
+		String line;
+		while((line = pendingLines.poll()) != null) {
+			nofPendingLines.decrementAndGet();
+			if(lines == null) {
+				lines = new StringBuilder();
+			}
+			lines.append(line).append('\n');
+		}
+		long dropped = nofDroppedLines.getAndSet(0);
+		if(dropped > 0) {
+			if(lines == null) {
+				lines = new StringBuilder();
+			}
+			lines.append("(").append(dropped).append(" lines dropped)\n");
+		}
+		return lines == null ? null : lines.toString();
+	}
+}
@@ -0,0 +1,126 @@
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the barbershop without a window, for load testing: the same Barbershop
+ * and CustomerQueue as the GUI, of any size, with every sleep divided by
+ * Globals.timeCompression. Instead of showing the customers, it counts them,
+ * and samples how many are waiting in the lounge, printing a line every second
+ * and the ShopMetrics at the end.
+ */
+public class HeadlessBarbershop implements Gui {
+	/** The number of milliseconds between samples of the queue */
+	private static final int SAMPLE_INTERVAL = 10;
+
+	private final LongAdder nofStarted = new LongAdder();
+	private final LongAdder nofServed = new LongAdder();
+
+	/**
+	 * Runs the barbershop for a number of seconds, then stops the doormen and
+	 * the barbers.
+	 * @param queueName		The name of the customer queue, one of CustomerQueue.NAMES.
+	 * @param capacity		The number of lounge chairs.
+	 * @param nofDoormen	The number of doormen.
+	 * @param nofBarbers	The number of barbers.
+	 * @param policy		What the doormen do with customers when the lounge is full.
+	 * @param factory		Makes the threads of the doormen and barbers.
+	 * @param seconds		The number of real seconds to run.
+	 */
+	public void run(String queueName, int capacity, int nofDoormen, int nofBarbers, OverloadPolicy policy,
+			ThreadFactory factory, int seconds) {
+		CustomerQueue queue = CustomerQueue.create(queueName, capacity, nofBarbers, this);
+		Barbershop shop = new Barbershop(queue, this, nofDoormen, nofBarbers, policy);
+		double compression = Globals.timeCompression;
+		System.out.println("Headless barbershop: "+queue.getName()+" queue, "+capacity+" chairs, "+
+				nofDoormen+" doormen, "+nofBarbers+" barbers, "+policy.getName()+" when full, time compressed "+
+				(Double.isInfinite(compression) ? "to nothing" : compression+" times")+", "+seconds+" s");
+		System.out.println(String.format("%6s %15s %15s %10s %6s %14s",
+				"second", "arrived/s", "served/s", "waiting", "full", "p99 wait ms"));
+
+		long start = System.nanoTime();
+		shop.start(factory);
+
+		long nofSamples = 0;
+		long sumOfWaiting = 0;
+		long nofFull = 0;
+		int maxWaiting = 0;
+		long lastArrived = 0;
+		long lastServed = 0;
+		long secondSamples = 0;
+		long secondWaiting = 0;
+		long secondFull = 0;
+		long nextSecond = start + 1000000000L;
+		long end = start + seconds*1000000000L;
+		try {
+			while(true) {
+				Thread.sleep(SAMPLE_INTERVAL);
+				int waiting = queue.size();
+				nofSamples++;
+				sumOfWaiting += waiting;
+				maxWaiting = Math.max(maxWaiting, waiting);
+				secondSamples++;
+				secondWaiting += waiting;
+				if(waiting >= queue.getCapacity()) {
+					nofFull++;
+					secondFull++;
+				}
+				long now = System.nanoTime();
+				if(now >= nextSecond) {
+					long arrived = shop.getMetrics().getNofArrived();
+					long served = nofServed.sum();
+					System.out.println(String.format("%6d %,15d %,15d %10.1f %5.0f%% %14.3f",
+							(nextSecond-start)/1000000000L, arrived-lastArrived, served-lastServed,
+							(double)secondWaiting/secondSamples, 100.0*secondFull/secondSamples,
+							shop.getMetrics().getQueueWait().getValueAtPercentile(99)/1e6));
+					lastArrived = arrived;
+					lastServed = served;
+					secondSamples = 0;
+					secondWaiting = 0;
+					secondFull = 0;
+					nextSecond += 1000000000L;
+				}
+				if(now >= end) {
+					break;
+				}
+			}
+		} catch(InterruptedException e) {
+			// Cut the run short
+		}
+		double elapsed = (System.nanoTime()-start)/1e9;
+		long arrived = shop.getMetrics().getNofArrived();
+		long served = nofServed.sum();
+
+		System.out.println(String.format("Customers arrived: %,d (%,.0f/s)", arrived, arrived/elapsed));
+		System.out.println(String.format("Customers served:  %,d (%,.0f/s), %,d in the barber chairs",
+				served, served/elapsed, nofStarted.sum()-served));
+		System.out.println(String.format("Customers waiting: %.1f on average, at most %d, all chairs taken %.0f%% of the time",
+				(double)sumOfWaiting/Math.max(1, nofSamples), maxWaiting, 100.0*nofFull/Math.max(1, nofSamples)));
+
+		shop.getMetrics().print(System.out);
+		shop.stop();
+	}
+
+	public void println(String text) {
+		// Nobody is watching
+	}
+
+	public void fillLoungeChair(int pos, Customer customer) {
+	}
+
+	public void emptyLoungeChair(int pos) {
+	}
+
+	public void fillBarberChair(int pos, Customer customer) {
+		nofStarted.increment();
+	}
+
+	public void emptyBarberChair(int pos) {
+		nofServed.increment();
+	}
+
+	public void barberIsSleeping(int pos) {
+	}
+
+	public void barberIsAwake(int pos) {
+	}
+}
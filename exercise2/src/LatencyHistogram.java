@@ -0,0 +1,110 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, laid out like an HdrHistogram:
+ * every power of two is split into 32 buckets of equal width, so any value is
+ * known to within about 3%, from nanoseconds to years, in under 2000 counters.
+ * Recording is a few atomic increments and never waits, so any number of
+ * threads can record while others read percentiles.
+ */
+public class LatencyHistogram {
+	/** The number of bits below the highest one that pick a bucket */
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NOF_BUCKETS = (64-SUB_BUCKET_BITS)*SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NOF_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a duration. Negative durations count as 0.
+	 * @param nanos	The duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Returns the bucket of a value: values below SUB_BUCKETS have one each,
+	 * and larger ones share a bucket with values of the same highest bit and
+	 * the same SUB_BUCKET_BITS bits below it.
+	 */
+	private static int bucketOf(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highestBit - SUB_BUCKET_BITS;
+		return (shift+1)*SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS-1));
+	}
+
+	/**
+	 * Returns the largest value in a bucket.
+	 */
+	private static long highestValueIn(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket/SUB_BUCKETS - 1;
+		long lowest = (long)(SUB_BUCKETS + bucket%SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the sum of all durations recorded, in nanoseconds.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Returns the mean duration in nanoseconds, or 0 if none were recorded.
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double)sum.sum()/n;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns a duration at least as long as the given share of the durations
+	 * recorded, and within about 3% of the shortest such duration.
+	 * @param percentile	The share in percent, from 0 to 100.
+	 * @return	The duration in nanoseconds, or 0 if none were recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[NOF_BUCKETS];
+		long total = 0;
+		for(int i = 0; i < NOF_BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(total*Math.min(100, Math.max(0, percentile))/100));
+		long seen = 0;
+		for(int i = 0; i < NOF_BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				return Math.min(highestValueIn(i), getMax());
+			}
+		}
+		return getMax();
+	}
+}
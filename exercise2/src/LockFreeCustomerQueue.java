@@ -0,0 +1,228 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A queue of customers as a circular buffer that the doorman and the barbers
+ * share without a lock, after Dmitry Vyukov's bounded MPMC queue.
+ *
+ * Adding and taking customers claim positions by compare-and-set on two
+ * counters that only grow, and position p uses chair p % capacity. Every chair
+ * has a sequence number saying whose turn it is: p when it is free for the
+ * customer of position p, p+1 when that customer is seated, and p+capacity
+ * when the chair is free again for the next round. So a chair is only ever
+ * touched by one thread at a time, and the GUI is told a chair is filled before
+ * a barber can see the customer in it, and emptied before the doorman can seat
+ * another customer in it.
+ *
+ * A barber finding the lounge empty, or a doorman finding it full, retries a
+ * few times and then parks until woken. Every add wakes one waiting barber,
+ * and every next one waiting doorman. A thread that was woken and finds more
+ * work than it can do passes the wakeup on.
+ */
+public class LockFreeCustomerQueue implements CustomerQueue {
+	/** Times to retry before parking */
+	private static final int NOF_SPINS = 100;
+
+	private final Gui gui;
+	private final int capacity;
+	/** The customers in the lounge chairs */
+	private final Customer[] chairs;
+	/** The position each chair waits for, see above */
+	private final AtomicLongArray sequences;
+	/** The position of the next customer to add */
+	private final AtomicLong addPosition = new AtomicLong();
+	/** The position of the next customer to take */
+	private final AtomicLong takePosition = new AtomicLong();
+	/** Barbers parked until a customer arrives */
+	private final Waiters waitingBarbers = new Waiters();
+	/** Doormen parked until a chair is free */
+	private final Waiters waitingDoormen = new Waiters();
+
+	/**
+	 * Creates a new customer queue.
+	 * @param queueLength	The maximum length of the queue.
+	 * @param gui			A reference to the GUI interface.
+	 */
+	public LockFreeCustomerQueue(int queueLength, Gui gui) {
+		this.gui = gui;
+		this.capacity = queueLength;
+		this.chairs = new Customer[queueLength];
+		this.sequences = new AtomicLongArray(queueLength);
+		for(int chair = 0; chair < queueLength; chair++) {
+			sequences.set(chair, chair);
+		}
+	}
+
+	public void add(Customer customer) {
+		int spins = 0;
+		boolean parked = false;
+		while(!tryAdd(customer)) {
+			if(spins < NOF_SPINS) {
+				spins++;
+			} else {
+				parked = true;
+				park(waitingDoormen, true, Long.MAX_VALUE);
+			}
+		}
+		wakeUp(waitingBarbers);
+		if(parked && !isFull()) {
+			wakeUp(waitingDoormen);
+		}
+	}
+
+	public boolean offer(Customer customer, long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int spins = 0;
+		boolean parked = false;
+		while(!tryAdd(customer)) {
+			long nanos = deadline - System.nanoTime();
+			if(nanos <= 0 || Thread.currentThread().isInterrupted()) {
+				// A wakeup taken by this doorman may have been meant for another
+				if(parked && !isFull()) {
+					wakeUp(waitingDoormen);
+				}
+				return false;
+			}
+			if(spins < NOF_SPINS) {
+				spins++;
+			} else {
+				parked = true;
+				park(waitingDoormen, true, nanos);
+			}
+		}
+		wakeUp(waitingBarbers);
+		if(parked && !isFull()) {
+			wakeUp(waitingDoormen);
+		}
+		return true;
+	}
+
+	public Customer next() {
+		int spins = 0;
+		boolean parked = false;
+		Customer customer;
+		while((customer = tryTake()) == null) {
+			if(spins < NOF_SPINS) {
+				spins++;
+			} else {
+				parked = true;
+				park(waitingBarbers, false, Long.MAX_VALUE);
+			}
+		}
+		wakeUp(waitingDoormen);
+		if(parked && !isEmpty()) {
+			wakeUp(waitingBarbers);
+		}
+		return customer;
+	}
+
+	public Customer poll() {
+		Customer customer = tryTake();
+		if(customer != null) {
+			wakeUp(waitingDoormen);
+		}
+		return customer;
+	}
+
+	/**
+	 * Seats a customer if a chair is free.
+	 * @return	Whether the customer was seated.
+	 */
+	private boolean tryAdd(Customer customer) {
+		long position = addPosition.get();
+		while(true) {
+			int chair = (int)(position % capacity);
+			long difference = sequences.get(chair) - position;
+			if(difference == 0) {
+				if(addPosition.compareAndSet(position, position+1)) {
+					chairs[chair] = customer;
+					customer.markSeated();
+					gui.fillLoungeChair(chair, customer);
+					sequences.set(chair, position+1);
+					return true;
+				}
+				position = addPosition.get();
+			} else if(difference < 0) {
+				// The chair still holds the customer from the last round
+				return false;
+			} else {
+				// Another doorman took this position
+				position = addPosition.get();
+			}
+		}
+	}
+
+	/**
+	 * Takes the customer who has waited the longest if there is one.
+	 * @return	The customer, or null if the lounge is empty.
+	 */
+	private Customer tryTake() {
+		long position = takePosition.get();
+		while(true) {
+			int chair = (int)(position % capacity);
+			long difference = sequences.get(chair) - (position+1);
+			if(difference == 0) {
+				if(takePosition.compareAndSet(position, position+1)) {
+					Customer customer = chairs[chair];
+					chairs[chair] = null;
+					gui.emptyLoungeChair(chair);
+					sequences.set(chair, position+capacity);
+					return customer;
+				}
+				position = takePosition.get();
+			} else if(difference < 0) {
+				// Nobody is seated in the chair yet
+				return null;
+			} else {
+				// Another barber took this position
+				position = takePosition.get();
+			}
+		}
+	}
+
+	/**
+	 * Parks the current thread until woken or the given number of nanoseconds
+	 * have passed, unless the queue changed after it joined the waiters. Since
+	 * a thread joins the waiters before looking at the queue, and the other
+	 * side changes the queue before looking for waiters, one of them always
+	 * sees the other. Leaving the waiters is O(1), see Waiters.
+	 */
+	private void park(Waiters waiters, boolean forChair, long nanos) {
+		Waiters.Node node = waiters.push();
+		if(forChair ? isFull() : isEmpty()) {
+			LockSupport.parkNanos(this, nanos);
+		}
+		node.cancel();
+	}
+
+	private static void wakeUp(Waiters waiters) {
+		waiters.wakeUp();
+	}
+
+	/**
+	 * Returns the number of customers waiting, counting those being seated or
+	 * taken at this moment.
+	 */
+	public int size() {
+		long taken = takePosition.get();
+		return (int)Math.max(0, Math.min(capacity, addPosition.get()-taken));
+	}
+
+	public boolean isEmpty() {
+		return addPosition.get() == takePosition.get();
+	}
+
+	public boolean isFull() {
+		return addPosition.get()-takePosition.get() >= capacity;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public String getName() {
+		return "lock-free";
+	}
+}
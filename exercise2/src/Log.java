@@ -0,0 +1,214 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The log of the barbers and doormen. A record is a level, a message template
+ * with {} for up to two numbers, and the numbers, so logging needs no string
+ * building. Records go into a ring of preallocated slots, claimed like the
+ * positions of the LockFreeCustomerQueue, so logging never allocates, locks or
+ * waits: when the ring is full, the record is dropped and counted.
+ *
+ * A single drainer thread turns the records into lines for the console and
+ * the GUI. Below the level set, logging costs one read of a volatile field.
+ * Until start is called the level is OFF.
+ */
+public final class Log {
+	public enum Level { DEBUG, INFO, WARNING, OFF }
+
+	/** The number of slots in the ring, a power of two */
+	private static final int CAPACITY = 1 << 12;
+	/** The number of milliseconds the drainer sleeps when the ring is empty */
+	private static final int DRAIN_INTERVAL = 10;
+
+	private static volatile Level level = Level.OFF;
+	private static volatile Gui gui;
+	private static volatile PrintStream console;
+	private static Thread drainer;
+
+	/** The position each slot waits for, as in LockFreeCustomerQueue */
+	private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+	private static final Level[] levels = new Level[CAPACITY];
+	private static final String[] templates = new String[CAPACITY];
+	private static final long[] firstArguments = new long[CAPACITY];
+	private static final long[] secondArguments = new long[CAPACITY];
+	/** The position of the next record to add */
+	private static final AtomicLong addPosition = new AtomicLong();
+	/** The position of the next record to drain, only used by the drainer */
+	private static long drainPosition;
+	private static final AtomicLong nofDropped = new AtomicLong();
+
+	static {
+		for(int i = 0; i < CAPACITY; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	// Hides the constructor.
+	private Log() {}
+
+	/**
+	 * Starts the drainer, writing records of the given level and above.
+	 * @param level		The lowest level to log, OFF to log nothing.
+	 * @param gui		The GUI to show the lines in, or null.
+	 * @param console	The stream to print the lines to, or null.
+	 */
+	public static synchronized void start(Level level, Gui gui, PrintStream console) {
+		Log.gui = gui;
+		Log.console = console;
+		Log.level = level;
+		if(drainer == null) {
+			drainer = new Thread(Log::drain, "log drainer");
+			drainer.setDaemon(true);
+			drainer.start();
+		}
+	}
+
+	public static void setLevel(Level level) {
+		Log.level = level;
+	}
+
+	public static boolean isEnabled(Level level) {
+		return level.compareTo(Log.level) >= 0;
+	}
+
+	public static void debug(String template, long first, long second) {
+		if(Level.DEBUG.compareTo(level) >= 0) {
+			add(Level.DEBUG, template, first, second);
+		}
+	}
+
+	public static void debug(String template, long first) {
+		debug(template, first, 0);
+	}
+
+	public static void debug(String message) {
+		debug(message, 0, 0);
+	}
+
+	public static void info(String template, long first, long second) {
+		if(Level.INFO.compareTo(level) >= 0) {
+			add(Level.INFO, template, first, second);
+		}
+	}
+
+	public static void info(String template, long first) {
+		info(template, first, 0);
+	}
+
+	public static void info(String message) {
+		info(message, 0, 0);
+	}
+
+	public static void warning(String template, long first, long second) {
+		if(Level.WARNING.compareTo(level) >= 0) {
+			add(Level.WARNING, template, first, second);
+		}
+	}
+
+	public static void warning(String template, long first) {
+		warning(template, first, 0);
+	}
+
+	public static void warning(String message) {
+		warning(message, 0, 0);
+	}
+
+	/**
+	 * Puts a record in the ring, or drops it if the ring is full.
+	 */
+	private static void add(Level level, String template, long first, long second) {
+		long position = addPosition.get();
+		while(true) {
+			int slot = (int)position & (CAPACITY-1);
+			long difference = sequences.get(slot) - position;
+			if(difference == 0) {
+				if(addPosition.compareAndSet(position, position+1)) {
+					levels[slot] = level;
+					templates[slot] = template;
+					firstArguments[slot] = first;
+					secondArguments[slot] = second;
+					sequences.set(slot, position+1);
+					return;
+				}
+				position = addPosition.get();
+			} else if(difference < 0) {
+				nofDropped.incrementAndGet();
+				return;
+			} else {
+				position = addPosition.get();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of records dropped since the start because the ring was full.
+	 */
+	public static long getNofDropped() {
+		return nofDropped.get();
+	}
+
+	/**
+	 * Writes out the records as they come, and the number of records dropped
+	 * since the last time.
+	 */
+	private static void drain() {
+		StringBuilder batch = new StringBuilder();
+		long reportedDropped = 0;
+		while(true) {
+			int nofDrained = 0;
+			Gui target = gui;
+			// At most a ring's worth at a time, so a steady stream is still written out
+			while(nofDrained < CAPACITY) {
+				int slot = (int)drainPosition & (CAPACITY-1);
+				if(sequences.get(slot) != drainPosition+1) {
+					break;
+				}
+				int start = batch.length();
+				batch.append(levels[slot]).append(": ");
+				format(batch, templates[slot], firstArguments[slot], secondArguments[slot]);
+				templates[slot] = null;
+				sequences.set(slot, drainPosition+CAPACITY);
+				drainPosition++;
+				nofDrained++;
+				if(target != null) {
+					target.println(batch.substring(start));
+				}
+				batch.append('\n');
+			}
+			long dropped = nofDropped.get();
+			if(dropped != reportedDropped) {
+				String line = "WARNING: "+(dropped-reportedDropped)+" log records dropped";
+				reportedDropped = dropped;
+				if(target != null) {
+					target.println(line);
+				}
+				batch.append(line).append('\n');
+			}
+			PrintStream out = console;
+			if(out != null && batch.length() > 0) {
+				out.print(batch);
+				out.flush();
+			}
+			batch.setLength(0);
+			if(nofDrained == 0) {
+				LockSupport.parkNanos(DRAIN_INTERVAL*1000000L);
+			}
+		}
+	}
+
+	/**
+	 * Appends a template with each {} replaced by the next number.
+	 */
+	private static void format(StringBuilder line, String template, long first, long second) {
+		int nofUsed = 0;
+		int from = 0;
+		int at;
+		while((at = template.indexOf("{}", from)) >= 0) {
+			line.append(template, from, at).append(nofUsed++ == 0 ? first : second);
+			from = at+2;
+		}
+		line.append(template, from, template.length());
+	}
+}
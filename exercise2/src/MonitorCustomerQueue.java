@@ -0,0 +1,109 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue of customers as a circular buffer guarded by the object's monitor,
+ * as the queue was first written. The doorman and the barbers all wait on the
+ * same monitor, so every add and every next wakes up all of them with
+ * notifyAll, and all but one go back to waiting.
+ */
+public class MonitorCustomerQueue implements CustomerQueue {
+	private final Gui gui;
+	/** The customers in the lounge chairs, null for an empty chair */
+	private final Customer[] chairs;
+	/** The chair of the customer who has waited the longest */
+	private int head;
+	/** The number of customers waiting */
+	private int count;
+
+	/**
+	 * Creates a new customer queue.
+	 * @param queueLength	The maximum length of the queue.
+	 * @param gui			A reference to the GUI interface.
+	 */
+	public MonitorCustomerQueue(int queueLength, Gui gui) {
+		this.gui = gui;
+		this.chairs = new Customer[queueLength];
+	}
+
+	public synchronized void add(Customer customer) {
+		while(count == chairs.length) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				// Keep waiting for a free chair
+			}
+		}
+		seat(customer);
+	}
+
+	public synchronized boolean offer(Customer customer, long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while(count == chairs.length) {
+			long nanos = deadline - System.nanoTime();
+			if(nanos <= 0) {
+				return false;
+			}
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, nanos);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		seat(customer);
+		return true;
+	}
+
+	/**
+	 * Seats a customer in the next chair, which must be free. Called holding the monitor.
+	 */
+	private void seat(Customer customer) {
+		int chair = (head + count) % chairs.length;
+		chairs[chair] = customer;
+		count++;
+		customer.markSeated();
+		gui.fillLoungeChair(chair, customer);
+		notifyAll();
+	}
+
+	public synchronized Customer next() {
+		while(count == 0) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				// Keep waiting for a customer
+			}
+		}
+		return takeHead();
+	}
+
+	public synchronized Customer poll() {
+		return count == 0 ? null : takeHead();
+	}
+
+	/**
+	 * Takes the customer who has waited the longest, who must be there.
+	 * Called holding the monitor.
+	 */
+	private Customer takeHead() {
+		Customer customer = chairs[head];
+		chairs[head] = null;
+		gui.emptyLoungeChair(head);
+		head = (head + 1) % chairs.length;
+		count--;
+		notifyAll();
+		return customer;
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+
+	public int getCapacity() {
+		return chairs.length;
+	}
+
+	public String getName() {
+		return "monitor";
+	}
+}
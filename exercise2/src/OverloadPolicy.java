@@ -0,0 +1,111 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the doorman does with an arriving customer when the lounge is (nearly)
+ * full. Blocking, the original behaviour, makes the doorman wait for a chair
+ * however long it takes, so under sustained overload every customer waits as
+ * long as the lounge is deep. The other policies shed load instead, trading
+ * lost customers for shorter waits:
+ *
+ * reject turns the customer away at once;
+ * timeout waits a while for a chair, then turns the customer away;
+ * drop-oldest seats the customer and sends home the one who has waited the longest;
+ * red (random early detection) turns customers away at random once the lounge
+ * is more than half full, more often the fuller it is, and always when it is full.
+ *
+ * Every customer turned away or sent home is counted in ShopMetrics.
+ */
+public class OverloadPolicy {
+	/** The names accepted by create */
+	public static final String[] NAMES = {"block", "reject", "timeout", "drop-oldest", "red"};
+	/** The share of chairs taken above which red starts turning customers away */
+	private static final double RED_MIN_OCCUPANCY = 0.5;
+	/**
+	 * The chance red turns a customer away when every chair is taken, rising to it
+	 * from 0 at RED_MIN_OCCUPANCY. A full lounge turns the customer away anyway.
+	 */
+	private static final double RED_MAX_DROP_CHANCE = 0.5;
+
+	private enum Kind { BLOCK, REJECT, TIMEOUT, DROP_OLDEST, RED }
+
+	private final String name;
+	private final Kind kind;
+	private final int timeoutMillis;
+
+	private OverloadPolicy(String name, Kind kind, int timeoutMillis) {
+		this.name = name;
+		this.kind = kind;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Creates the policy with the given name, see above.
+	 * @param timeoutMillis	How long the timeout policy waits for a chair, in
+	 * 						barbershop milliseconds, divided by Globals.timeCompression.
+	 * @throws IllegalArgumentException	If there is no policy with that name.
+	 */
+	public static OverloadPolicy create(String name, int timeoutMillis) {
+		if(timeoutMillis < 0) {
+			throw new IllegalArgumentException("The overload timeout must not be negative");
+		}
+		if(!Arrays.asList(NAMES).contains(name)) {
+			throw new IllegalArgumentException("Unknown overload policy "+name);
+		}
+		return new OverloadPolicy(name, Kind.valueOf(name.replace('-', '_').toUpperCase()), timeoutMillis);
+	}
+
+	/**
+	 * Lets a customer into the lounge, or turns it away, recording customers
+	 * turned away or sent home in the metrics.
+	 * @return	Whether the customer got a chair.
+	 */
+	public boolean admit(CustomerQueue queue, Customer customer, ShopMetrics metrics) {
+		boolean seated;
+		switch(kind) {
+			case BLOCK:
+				queue.add(customer);
+				seated = true;
+				break;
+			case REJECT:
+				seated = queue.offer(customer, 0, TimeUnit.NANOSECONDS);
+				break;
+			case TIMEOUT:
+				double compression = Globals.timeCompression;
+				long nanos = Double.isInfinite(compression) ? 0 : (long)(timeoutMillis*1e6/compression);
+				seated = queue.offer(customer, nanos, TimeUnit.NANOSECONDS);
+				break;
+			case DROP_OLDEST:
+				while(!(seated = queue.offer(customer, 0, TimeUnit.NANOSECONDS))
+						&& !Thread.currentThread().isInterrupted()) {
+					// A barber may take the oldest customer first, then the next offer gets the chair
+					Customer oldest = queue.poll();
+					if(oldest != null) {
+						metrics.customerDropped(oldest);
+					}
+				}
+				break;
+			case RED:
+				double occupancy = (double)queue.size()/queue.getCapacity();
+				double dropChance = (occupancy-RED_MIN_OCCUPANCY)/(1-RED_MIN_OCCUPANCY)*RED_MAX_DROP_CHANCE;
+				seated = ThreadLocalRandom.current().nextDouble() >= dropChance
+						&& queue.offer(customer, 0, TimeUnit.NANOSECONDS);
+				break;
+			default: throw new AssertionError(kind);
+		}
+		if(seated) {
+			metrics.customerSeated(customer);
+		} else {
+			metrics.customerTurnedAway(customer);
+		}
+		return seated;
+	}
+
+	/**
+	 * Returns the name of this policy, as accepted by create.
+	 */
+	public String getName() {
+		return name;
+	}
+}
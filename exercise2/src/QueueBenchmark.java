@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how fast customers get from doormen to barbers through each kind of
+ * CustomerQueue, with a number of producer threads adding customers as fast as
+ * they can and a number of consumer threads taking them, and nothing shown on
+ * screen. Reported are the handoffs per second and the time from adding a
+ * customer until a barber has it: the median and the 99th percentile.
+ *
+ * Every value is the median over a number of trials, after one warm-up trial,
+ * each on a fresh queue. After every trial the customers taken are checked
+ * against the customers added. A queue that lost or duplicated a customer is
+ * reported as FAILED and makes the benchmark exit with status 1.
+ */
+public class QueueBenchmark {
+	private static final String USAGE =
+			"Usage: java QueueBenchmark [options]\n" +
+			"  --queues <a,b,..>     Queues to measure, of "+String.join(", ", CustomerQueue.NAMES)+" (default all)\n" +
+			"  --ratios <p:c,..>     Numbers of producers and consumers (default 1:1,1:3,3:1,4:4)\n" +
+			"  --handoffs <n>        Customers handed off in each trial (default 200000)\n" +
+			"  --capacity <n>        Lounge chairs (default "+Constants.NOF_CHAIRS+")\n" +
+			"  --work <us>           Microseconds a consumer spends on each customer (default 0)\n" +
+			"  --trials <n>          Measured trials per setting (default 5)";
+
+	/**
+	 * A customer that knows when it was added, and which one it was.
+	 */
+	private static class TimedCustomer extends Customer {
+		final long number;
+		long addedAt;
+
+		TimedCustomer(long number) {
+			this.number = number;
+		}
+	}
+
+	/** Tells a consumer to stop, added after all other customers are taken */
+	private static final TimedCustomer LAST = new TimedCustomer(-1);
+	/** The number of nanoseconds without a customer taken before a queue is taken to have lost some */
+	private static final long STALL_TIMEOUT = 10000000000L;
+
+	/**
+	 * A GUI that shows nothing.
+	 */
+	private static class NoGui implements Gui {
+		public void println(String text) {}
+		public void fillLoungeChair(int pos, Customer customer) {}
+		public void emptyLoungeChair(int pos) {}
+		public void fillBarberChair(int pos, Customer customer) {}
+		public void emptyBarberChair(int pos) {}
+		public void barberIsSleeping(int pos) {}
+		public void barberIsAwake(int pos) {}
+	}
+
+	/**
+	 * Takes customers until the last one, recording how long each waited, and
+	 * spending a while on each, like a barber cutting hair.
+	 */
+	private static class Consumer implements Runnable {
+		private final CustomerQueue queue;
+		private final int number;
+		private final long workNanos;
+		/** Counts the customers taken by all consumers */
+		private final LongAdder nofTakenByAll;
+		long[] latencies = new long[1024];
+		int nofTaken;
+		long sumOfNumbers;
+
+		/**
+		 * @param number	The number of this consumer, as a barber, from 0.
+		 */
+		Consumer(CustomerQueue queue, int number, long workNanos, LongAdder nofTakenByAll) {
+			this.queue = queue;
+			this.number = number;
+			this.workNanos = workNanos;
+			this.nofTakenByAll = nofTakenByAll;
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				TimedCustomer customer = (TimedCustomer)queue.next(number);
+				if(customer == LAST) {
+					return;
+				}
+				if(nofTaken == latencies.length) {
+					latencies = Arrays.copyOf(latencies, 2*nofTaken);
+				}
+				latencies[nofTaken++] = System.nanoTime()-customer.addedAt;
+				sumOfNumbers += customer.number;
+				nofTakenByAll.increment();
+				if(workNanos > 0) {
+					long end = System.nanoTime()+workNanos;
+					while(System.nanoTime() < end) {
+						// Cutting hair
+					}
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		String[] queues = CustomerQueue.NAMES;
+		String[] ratios = {"1:1", "1:3", "3:1", "4:4"};
+		int handoffs = 200000;
+		int capacity = Constants.NOF_CHAIRS;
+		int work = 0;
+		int trials = 5;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				String flag = args[i];
+				if(flag.equals("--help") || flag.equals("-h")) {
+					exitWithUsage(null);
+				}
+				if(i+1 == args.length) {
+					exitWithUsage("Missing value for "+flag);
+				}
+				String value = args[++i];
+				switch(flag) {
+					case "--queues": queues = value.split(","); break;
+					case "--ratios": ratios = value.split(","); break;
+					case "--handoffs": handoffs = Integer.parseInt(value); break;
+					case "--capacity": capacity = Integer.parseInt(value); break;
+					case "--work": work = Integer.parseInt(value); break;
+					case "--trials": trials = Integer.parseInt(value); break;
+					default: exitWithUsage("Unknown option "+flag);
+				}
+			}
+			if(handoffs < 1 || capacity < 1 || trials < 1) {
+				exitWithUsage("All values must be at least 1.");
+			}
+			if(work < 0) {
+				exitWithUsage("The work must not be negative.");
+			}
+			for(String queue : queues) {
+				CustomerQueue.create(queue.trim(), capacity, 1, new NoGui());
+			}
+		} catch(IllegalArgumentException iae) {
+			exitWithUsage(iae.getMessage());
+		}
+
+		System.out.println(handoffs+" handoffs per trial, "+capacity+" chairs, "+work+" us of work per customer, "+
+				Runtime.getRuntime().availableProcessors()+" cores");
+		System.out.println(String.format("%-20s %7s %15s %12s %12s  %s",
+				"queue", "p:c", "handoffs/s", "p50 us", "p99 us", "check"));
+		boolean failed = false;
+		for(String ratio : ratios) {
+			String[] counts = ratio.split(":");
+			int producers = 0;
+			int consumers = 0;
+			try {
+				if(counts.length != 2) {
+					exitWithUsage("A ratio needs a number of producers and of consumers, like 1:3.");
+				}
+				producers = Integer.parseInt(counts[0].trim());
+				consumers = Integer.parseInt(counts[1].trim());
+			} catch(NumberFormatException nfe) {
+				exitWithUsage(nfe.getMessage());
+			}
+			if(producers < 1 || consumers < 1) {
+				exitWithUsage("A ratio needs at least one producer and one consumer.");
+			}
+			for(String queue : queues) {
+				failed |= !measure(queue.trim(), producers, consumers, handoffs, capacity, work*1000L, trials);
+			}
+		}
+		if(failed) {
+			System.out.println("A queue lost customers.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs the trials of one queue and ratio, and prints a line of results.
+	 * @return	Whether every customer added was taken exactly once in every trial.
+	 */
+	private static boolean measure(String name, int producers, int consumers, int handoffs, int capacity,
+			long workNanos, int trials) {
+		String problem = null;
+		double[] throughputs = new double[trials];
+		double[] medians = new double[trials];
+		double[] percentiles = new double[trials];
+		// The first trial warms up
+		for(int i = -1; i < trials; i++) {
+			CustomerQueue queue = CustomerQueue.create(name, capacity, consumers, new NoGui());
+			Thread[] producerThreads = new Thread[producers];
+			for(int p = 0; p < producers; p++) {
+				// The customers are made in advance, so making them is not measured
+				int from = (int)((long)handoffs*p/producers);
+				TimedCustomer[] customers = new TimedCustomer[(int)((long)handoffs*(p+1)/producers)-from];
+				for(int c = 0; c < customers.length; c++) {
+					customers[c] = new TimedCustomer(from+c);
+				}
+				producerThreads[p] = new Thread(() -> {
+					for(TimedCustomer customer : customers) {
+						customer.addedAt = System.nanoTime();
+						queue.add(customer);
+					}
+				});
+			}
+			LongAdder nofTaken = new LongAdder();
+			Consumer[] consumerRunnables = new Consumer[consumers];
+			Thread[] consumerThreads = new Thread[consumers];
+			for(int c = 0; c < consumers; c++) {
+				consumerRunnables[c] = new Consumer(queue, c, workNanos, nofTaken);
+				consumerThreads[c] = new Thread(consumerRunnables[c]);
+			}
+
+			long start = System.nanoTime();
+			for(Thread thread : consumerThreads) {
+				thread.start();
+			}
+			for(Thread thread : producerThreads) {
+				thread.start();
+			}
+			join(producerThreads);
+			// Queues with a deque per consumer do not keep order, so the consumers
+			// are only told to stop once all customers are taken
+			long lastProgress = System.nanoTime();
+			long lastTaken = 0;
+			long taken;
+			while((taken = nofTaken.sum()) < handoffs && System.nanoTime()-lastProgress < STALL_TIMEOUT) {
+				if(taken != lastTaken) {
+					lastTaken = taken;
+					lastProgress = System.nanoTime();
+				}
+				try {
+					Thread.sleep(1);
+				} catch(InterruptedException e) {
+					// This should not happen.
+					e.printStackTrace();
+				}
+			}
+			long elapsed = System.nanoTime()-start;
+			for(int c = 0; c < consumers; c++) {
+				queue.add(LAST);
+			}
+			join(consumerThreads);
+
+			long[] latencies = new long[handoffs];
+			int nofLatencies = 0;
+			long sumOfNumbers = 0;
+			for(Consumer consumer : consumerRunnables) {
+				System.arraycopy(consumer.latencies, 0, latencies, nofLatencies,
+						Math.min(consumer.nofTaken, handoffs-nofLatencies));
+				nofLatencies += consumer.nofTaken;
+				sumOfNumbers += consumer.sumOfNumbers;
+			}
+			if(nofLatencies != handoffs || sumOfNumbers != (long)handoffs*(handoffs-1)/2 || !queue.isEmpty()) {
+				problem = "FAILED, "+nofLatencies+" of "+handoffs+" customers taken";
+			}
+			if(i >= 0) {
+				Arrays.sort(latencies);
+				throughputs[i] = handoffs*1e9/Math.max(1, elapsed);
+				medians[i] = latencies[handoffs/2]/1e3;
+				percentiles[i] = latencies[(int)Math.min(handoffs-1, handoffs*99L/100)]/1e3;
+			}
+		}
+		Arrays.sort(throughputs);
+		Arrays.sort(medians);
+		Arrays.sort(percentiles);
+
+		System.out.println(String.format("%-20s %7s %,15.0f %,12.1f %,12.1f  %s",
+				name, producers+":"+consumers, throughputs[trials/2], medians[trials/2], percentiles[trials/2],
+				problem == null ? "ok" : problem));
+		return problem == null;
+	}
+
+	private static void join(Thread[] threads) {
+		for(Thread thread : threads) {
+			try {
+				thread.join();
+			} catch(InterruptedException e) {
+				// This should not happen.
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static void exitWithUsage(String message) {
+		if(message != null) {
+			System.out.println(message);
+		}
+		System.out.println(USAGE);
+		System.exit(message == null ? 0 : 1);
+	}
+}
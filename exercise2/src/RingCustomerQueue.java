@@ -0,0 +1,147 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A queue of customers as a circular buffer.
+ * The lounge chairs are the slots of the buffer: a customer sits down
+ * in the chair of the slot he is added to, and keeps it until a barber
+ * takes him.
+ *
+ * The doorman waits for a free chair on the notFull condition, and the
+ * barbers wait for a customer on the notEmpty condition. Every add and
+ * every next signals only one thread waiting on the other condition,
+ * so a handoff wakes up one thread, however many barbers there are.
+ */
+public class RingCustomerQueue implements CustomerQueue {
+	private final Gui gui;
+	/** The customers in the lounge chairs, null for an empty chair */
+	private final Customer[] chairs;
+	/** The chair of the customer who has waited the longest */
+	private int head;
+	/** The number of customers waiting */
+	private int count;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Signalled when a chair becomes free */
+	private final Condition notFull = lock.newCondition();
+	/** Signalled when a customer sits down */
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * Creates a new customer queue.
+	 * @param queueLength	The maximum length of the queue.
+	 * @param gui			A reference to the GUI interface.
+	 */
+	public RingCustomerQueue(int queueLength, Gui gui) {
+		this.gui = gui;
+		this.chairs = new Customer[queueLength];
+	}
+
+	/**
+	 * Seats a customer in the lounge, waiting for a free chair if all are taken.
+	 * @param customer	The customer arriving.
+	 */
+	public void add(Customer customer) {
+		lock.lock();
+		try {
+			while(count == chairs.length) {
+				notFull.awaitUninterruptibly();
+			}
+			seat(customer);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean offer(Customer customer, long timeout, TimeUnit unit) {
+		long nanos = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			while(count == chairs.length) {
+				if(nanos <= 0) {
+					return false;
+				}
+				try {
+					nanos = notFull.awaitNanos(nanos);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			seat(customer);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Seats a customer in the next chair, which must be free. Called with the lock held.
+	 */
+	private void seat(Customer customer) {
+		int chair = (head + count) % chairs.length;
+		chairs[chair] = customer;
+		count++;
+		customer.markSeated();
+		gui.fillLoungeChair(chair, customer);
+		notEmpty.signal();
+	}
+
+	/**
+	 * Takes the customer who has waited the longest, waiting for one
+	 * if the lounge is empty.
+	 * @return	The customer.
+	 */
+	public Customer next() {
+		lock.lock();
+		try {
+			while(count == 0) {
+				notEmpty.awaitUninterruptibly();
+			}
+			return takeHead();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Customer poll() {
+		lock.lock();
+		try {
+			return count == 0 ? null : takeHead();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the customer who has waited the longest, who must be there.
+	 * Called with the lock held.
+	 */
+	private Customer takeHead() {
+		Customer customer = chairs[head];
+		chairs[head] = null;
+		gui.emptyLoungeChair(head);
+		head = (head + 1) % chairs.length;
+		count--;
+		notFull.signal();
+		return customer;
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getCapacity() {
+		return chairs.length;
+	}
+
+	public String getName() {
+		return "ring";
+	}
+}
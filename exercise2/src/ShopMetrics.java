@@ -0,0 +1,171 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How well a barbershop runs, from the timestamps its customers carry:
+ * how long customers wait in the lounge, how long their haircuts take, how
+ * long the doormen wait for a free chair, how busy the barbers are, and how
+ * full the lounge is on average. Doormen and barbers record without locks,
+ * and the numbers can be read at any time while the barbershop runs.
+ *
+ * The average lounge occupancy is weighted by time: the time all customers
+ * spent in the lounge divided by the time passed (Little's law), counting the
+ * customers who have left the lounge, including those sent home.
+ *
+ * Under an OverloadPolicy that sheds load, customers are also lost: turned
+ * away by the doorman, or sent home from the lounge to make room. Goodput is
+ * the customers served per second, whatever the number arriving.
+ */
+public class ShopMetrics {
+	private final int nofBarbers;
+	private final long startedAt = System.nanoTime();
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private final LatencyHistogram serviceTime = new LatencyHistogram();
+	private final LatencyHistogram doormanBlocked = new LatencyHistogram();
+	private final LongAdder nofSeated = new LongAdder();
+	private final LongAdder nofTurnedAway = new LongAdder();
+	private final LongAdder nofDropped = new LongAdder();
+	/** The nanoseconds customers sent home spent in the lounge, for the occupancy */
+	private final LongAdder droppedLoungeTime = new LongAdder();
+
+	/**
+	 * @param nofBarbers	The number of barbers, to tell how busy they are.
+	 */
+	public ShopMetrics(int nofBarbers) {
+		this.nofBarbers = nofBarbers;
+	}
+
+	/**
+	 * Records a customer the doorman got a chair for.
+	 */
+	public void customerSeated(Customer customer) {
+		nofSeated.increment();
+		doormanBlocked.record(customer.getSeatedAt()-customer.getArrivedAt());
+	}
+
+	/**
+	 * Records a customer the doorman turned away without a chair.
+	 */
+	public void customerTurnedAway(Customer customer) {
+		nofTurnedAway.increment();
+		doormanBlocked.record(System.nanoTime()-customer.getArrivedAt());
+	}
+
+	/**
+	 * Records a customer sent home from the lounge before a barber took it.
+	 */
+	public void customerDropped(Customer customer) {
+		nofDropped.increment();
+		droppedLoungeTime.add(System.nanoTime()-customer.getSeatedAt());
+	}
+
+	/**
+	 * Records a customer whose haircut is done.
+	 */
+	public void customerServed(Customer customer) {
+		queueWait.record(customer.getHaircutStartedAt()-customer.getSeatedAt());
+		serviceTime.record(customer.getHaircutEndedAt()-customer.getHaircutStartedAt());
+	}
+
+	/**
+	 * Returns the times customers waited in the lounge for a barber, in nanoseconds.
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	/**
+	 * Returns the times haircuts took, in nanoseconds.
+	 */
+	public LatencyHistogram getServiceTime() {
+		return serviceTime;
+	}
+
+	/**
+	 * Returns the times doormen waited for a free chair, in nanoseconds.
+	 */
+	public LatencyHistogram getDoormanBlocked() {
+		return doormanBlocked;
+	}
+
+	public long getNofSeated() {
+		return nofSeated.sum();
+	}
+
+	public long getNofServed() {
+		return serviceTime.getCount();
+	}
+
+	public long getNofTurnedAway() {
+		return nofTurnedAway.sum();
+	}
+
+	/**
+	 * Returns the number of customers who came to the door, seated or turned away.
+	 */
+	public long getNofArrived() {
+		return getNofSeated()+getNofTurnedAway();
+	}
+
+	public long getNofDropped() {
+		return nofDropped.sum();
+	}
+
+	/**
+	 * Returns the share of the customers who came that were turned away or
+	 * sent home, from 0 to 1.
+	 */
+	public double getLossRate() {
+		long lost = getNofTurnedAway()+getNofDropped();
+		long arrived = getNofArrived();
+		return arrived == 0 ? 0 : (double)lost/arrived;
+	}
+
+	/**
+	 * Returns the number of seconds since the metrics were created.
+	 */
+	public double getElapsedSeconds() {
+		return (System.nanoTime()-startedAt)/1e9;
+	}
+
+	/**
+	 * Returns the share of time the barbers spent cutting hair, from 0 to 1.
+	 */
+	public double getBarberUtilization() {
+		return serviceTime.getSum()/1e9/(getElapsedSeconds()*nofBarbers);
+	}
+
+	/**
+	 * Returns the number of customers in the lounge, on average over time.
+	 */
+	public double getAverageOccupancy() {
+		return (queueWait.getSum()+droppedLoungeTime.sum())/1e9/getElapsedSeconds();
+	}
+
+	/**
+	 * Prints a summary: a line for each histogram in milliseconds, and the
+	 * barber utilization and lounge occupancy.
+	 */
+	public void print(PrintStream out) {
+		double elapsed = getElapsedSeconds();
+		out.println(String.format("%,d customers seated and %,d served in %.1f s, goodput %,.1f served/s",
+				getNofSeated(), getNofServed(), elapsed, getNofServed()/elapsed));
+		out.println(String.format("%,d turned away and %,d sent home from the lounge, %.1f%% of customers lost",
+				getNofTurnedAway(), getNofDropped(), 100*getLossRate()));
+		out.println(String.format("%-16s %12s %10s %10s %10s %10s %10s %10s",
+				"ms", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+		print(out, "lounge wait", queueWait);
+		print(out, "haircut", serviceTime);
+		print(out, "doorman blocked", doormanBlocked);
+		out.println(String.format("Barber utilization %.1f%% of %d barbers, lounge occupancy %.2f on average",
+				100*getBarberUtilization(), nofBarbers, getAverageOccupancy()));
+	}
+
+	private static void print(PrintStream out, String name, LatencyHistogram histogram) {
+		out.println(String.format("%-16s %,12d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f",
+				name, histogram.getCount(), histogram.getMean()/1e6,
+				histogram.getValueAtPercentile(50)/1e6, histogram.getValueAtPercentile(90)/1e6,
+				histogram.getValueAtPercentile(99)/1e6, histogram.getValueAtPercentile(99.9)/1e6,
+				histogram.getMax()/1e6));
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * The clock the barbers and the doorman sleep by. Times are given in
+ * barbershop milliseconds, and divided by Globals.timeCompression, so a run
+ * can be sped up to measure the synchronization rather than the sleeping.
+ */
+public final class SimulationClock {
+	// Hides the constructor.
+	private SimulationClock() {}
+
+	/**
+	 * Sleeps for the given barbershop time. When the time compresses to
+	 * nothing, returns at once, unless the thread was interrupted.
+	 * @param millis	The number of barbershop milliseconds to sleep.
+	 * @throws InterruptedException	If the thread is interrupted.
+	 */
+	public static void sleep(int millis) throws InterruptedException {
+		long nanos = (long)(millis*1e6/Globals.timeCompression);
+		if(nanos <= 0) {
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			return;
+		}
+		Thread.sleep(nanos/1000000, (int)(nanos%1000000));
+	}
+}
@@ -0,0 +1,317 @@
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A queue of customers split into one deque per barber, so barbers do not all
+ * contend for one queue. The doorman puts each customer at the back of one
+ * barber's deque, taking turns (round robin) or picking the shortest deque,
+ * and wakes that barber if it is waiting. Otherwise it lists the deque as
+ * unattended and wakes any waiting barber. A barber takes customers from the
+ * front of its own deque, and when that is empty steals from the back of the
+ * unattended deques, and of a few others picked at random.
+ *
+ * So customers are not served strictly in the order they came, but no customer
+ * waits behind a busy barber while another is idle. The lounge chairs are
+ * shared: a semaphore makes the doorman wait while all are taken, and the
+ * numbers of the free chairs are kept in a lock-free queue.
+ *
+ * Barbers must call next(int) with their number. A barber whose own deque is
+ * empty and whose steals fail tries a few more times and then parks, as in
+ * LockFreeCustomerQueue, unless a deque is listed as unattended. Customers in
+ * other deques are then taken by their own barbers, which were woken for them
+ * or are still busy. So idle barbers do not spin, and everything but poll
+ * takes the same time however many barbers there are.
+ */
+public class StealingCustomerQueue implements CustomerQueue {
+	/** Times to look through the deques again before parking */
+	private static final int NOF_SPINS = 20;
+	/** Deques a barber tries to steal from in one look */
+	private static final int NOF_VICTIMS = 4;
+
+	/** How the doorman picks a deque */
+	public enum Dispatch { ROUND_ROBIN, SHORTEST }
+
+	/**
+	 * A customer in a lounge chair.
+	 */
+	private static class Seat {
+		final Customer customer;
+		final int chair;
+
+		Seat(Customer customer, int chair) {
+			this.customer = customer;
+			this.chair = chair;
+		}
+	}
+
+	private final String name;
+	private final Gui gui;
+	private final int capacity;
+	private final Dispatch dispatch;
+	private final ConcurrentLinkedDeque<Seat>[] deques;
+	/** The number of customers in each deque, kept apart since a deque takes long to count */
+	private final AtomicIntegerArray lengths;
+	/** The number of customers in all deques together */
+	private final AtomicInteger nofWaiting = new AtomicInteger();
+	/** Barbers whose deque got a customer they were not woken for, for idle barbers to steal from */
+	private final ConcurrentLinkedQueue<Integer> unattended = new ConcurrentLinkedQueue<>();
+	/** Whether each barber is in unattended, so it is listed at most once */
+	private final AtomicIntegerArray listed;
+	/** The node each barber last parked with, to wake a barber directly in O(1) */
+	private final AtomicReferenceArray<Waiters.Node> parkedBarbers;
+	/** Barbers parked until a customer arrives */
+	private final Waiters waitingBarbers = new Waiters();
+	private final Semaphore freeChairCount;
+	private final ConcurrentLinkedQueue<Integer> freeChairs = new ConcurrentLinkedQueue<>();
+	/** The number of customers dispatched round robin */
+	private final AtomicLong nofDispatched = new AtomicLong();
+
+	/**
+	 * Creates a new customer queue.
+	 * @param name			The name of the queue, as accepted by CustomerQueue.create.
+	 * @param queueLength	The maximum length of the queue, over all barbers.
+	 * @param nofBarbers	The number of barbers, numbered from 0.
+	 * @param dispatch		How the doorman picks a barber's deque.
+	 * @param gui			A reference to the GUI interface.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public StealingCustomerQueue(String name, int queueLength, int nofBarbers, Dispatch dispatch, Gui gui) {
+		this.name = name;
+		this.gui = gui;
+		this.capacity = queueLength;
+		this.dispatch = dispatch;
+		deques = new ConcurrentLinkedDeque[nofBarbers];
+		for(int i = 0; i < nofBarbers; i++) {
+			deques[i] = new ConcurrentLinkedDeque<>();
+		}
+		lengths = new AtomicIntegerArray(nofBarbers);
+		listed = new AtomicIntegerArray(nofBarbers);
+		parkedBarbers = new AtomicReferenceArray<>(nofBarbers);
+		freeChairCount = new Semaphore(queueLength);
+		for(int chair = 0; chair < queueLength; chair++) {
+			freeChairs.add(chair);
+		}
+	}
+
+	public void add(Customer customer) {
+		freeChairCount.acquireUninterruptibly();
+		seat(customer);
+	}
+
+	public boolean offer(Customer customer, long timeout, TimeUnit unit) {
+		try {
+			if(!freeChairCount.tryAcquire(timeout, unit)) {
+				return false;
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		seat(customer);
+		return true;
+	}
+
+	/**
+	 * Seats a customer in a free chair, which the caller has counted down, and
+	 * puts it in the deque of a barber.
+	 */
+	private void seat(Customer customer) {
+		// There is a free chair, since its number is put back before the count
+		int chair = freeChairs.poll();
+		customer.markSeated();
+		gui.fillLoungeChair(chair, customer);
+		int barber = dispatch == Dispatch.ROUND_ROBIN
+				? (int)(nofDispatched.getAndIncrement() % deques.length) : shortestDeque();
+		lengths.incrementAndGet(barber);
+		nofWaiting.incrementAndGet();
+		deques[barber].addLast(new Seat(customer, chair));
+		wakeUp(barber);
+	}
+
+	/**
+	 * Returns the barber with the fewest customers waiting, starting the
+	 * search at a random one so ties are spread out.
+	 */
+	private int shortestDeque() {
+		int start = ThreadLocalRandom.current().nextInt(deques.length);
+		int shortest = start;
+		int shortestLength = Integer.MAX_VALUE;
+		for(int i = 0; i < deques.length && shortestLength > 0; i++) {
+			int barber = (start+i) % deques.length;
+			int length = lengths.get(barber);
+			if(length < shortestLength) {
+				shortest = barber;
+				shortestLength = length;
+			}
+		}
+		return shortest;
+	}
+
+	/**
+	 * Wakes the given barber if it is parked, or else lists its deque as
+	 * unattended and wakes any parked barber to steal the customer. The
+	 * barber's node is in the waiters as well, so whichever wakeup gets to it
+	 * first wakes it.
+	 */
+	private void wakeUp(int barber) {
+		Waiters.Node owner = parkedBarbers.get(barber);
+		if(owner == null || !owner.wake()) {
+			if(listed.compareAndSet(barber, 0, 1)) {
+				unattended.add(barber);
+			}
+			waitingBarbers.wakeUp();
+		}
+	}
+
+	/**
+	 * Not supported, since the queue needs to know which barber asks.
+	 * @throws UnsupportedOperationException	Always.
+	 */
+	public Customer next() {
+		throw new UnsupportedOperationException("A stealing queue needs the number of the barber");
+	}
+
+	/**
+	 * Takes the next customer for the given barber, going on waiting if
+	 * interrupted, like the other queues.
+	 */
+	public Customer next(int barber) {
+		int spins = 0;
+		boolean interrupted = false;
+		Customer customer;
+		while((customer = take(barber)) == null) {
+			if(spins < NOF_SPINS) {
+				spins++;
+			} else {
+				// An interrupted thread does not park, so clear it and set it again when done
+				interrupted |= Thread.interrupted();
+				park(barber);
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return customer;
+	}
+
+	/**
+	 * Takes the customer who has waited the longest, of those at the front of
+	 * the deques. A barber stealing from the back may leave an older customer
+	 * further in, so this is not always the oldest of all.
+	 */
+	public Customer poll() {
+		while(!isEmpty()) {
+			int oldest = -1;
+			long oldestSeatedAt = 0;
+			for(int i = 0; i < deques.length; i++) {
+				Seat first = deques[i].peekFirst();
+				if(first != null && (oldest < 0 || first.customer.getSeatedAt()-oldestSeatedAt < 0)) {
+					oldest = i;
+					oldestSeatedAt = first.customer.getSeatedAt();
+				}
+			}
+			Seat seat = oldest < 0 ? null : deques[oldest].pollFirst();
+			if(seat != null) {
+				return leave(seat, oldest);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Frees the chair of a customer taken from the given barber's deque.
+	 */
+	private Customer leave(Seat seat, int barber) {
+		lengths.decrementAndGet(barber);
+		nofWaiting.decrementAndGet();
+		gui.emptyLoungeChair(seat.chair);
+		freeChairs.add(seat.chair);
+		freeChairCount.release();
+		return seat.customer;
+	}
+
+	/**
+	 * Takes the first customer of the barber's own deque, or else the last
+	 * customer of an unattended deque or of a few random other barbers'
+	 * deques, and frees its chair.
+	 * @return	The customer, or null if none was found.
+	 */
+	private Customer take(int barber) {
+		Seat seat = deques[barber].pollFirst();
+		if(seat != null) {
+			return leave(seat, barber);
+		}
+		if(nofWaiting.get() == 0) {
+			return null;
+		}
+		Integer victim;
+		while((victim = unattended.poll()) != null) {
+			// Unlisted first, so a customer added from now on lists the deque again
+			listed.set(victim, 0);
+			seat = deques[victim].pollLast();
+			if(seat != null) {
+				if(lengths.get(victim) > 1) {
+					// Leave the rest to another barber
+					wakeUp(victim);
+				}
+				return leave(seat, victim);
+			}
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for(int i = 0; i < NOF_VICTIMS; i++) {
+			int other = random.nextInt(deques.length);
+			if(other != barber && lengths.get(other) > 0) {
+				seat = deques[other].pollLast();
+				if(seat != null) {
+					return leave(seat, other);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parks the current barber until woken, unless a customer was put in its
+	 * deque, or a deque was listed as unattended, after it joined the waiters.
+	 * Since a barber publishes its node before looking, and the doorman adds
+	 * to the deque and the list before looking for the node or any waiter, one
+	 * of them always sees the other. So every customer is in the deque of a
+	 * barber that is not parked, or in an unattended deque that wakes one.
+	 */
+	private void park(int barber) {
+		Waiters.Node node = waitingBarbers.push();
+		parkedBarbers.set(barber, node);
+		if(lengths.get(barber) == 0 && unattended.isEmpty()) {
+			LockSupport.park(this);
+		}
+		node.cancel();
+	}
+
+	public int size() {
+		return capacity - freeChairCount.availablePermits();
+	}
+
+	/**
+	 * Returns whether no customer is waiting in any deque. Unlike size, this
+	 * does not count customers whose chairs are being handed back.
+	 */
+	public boolean isEmpty() {
+		return nofWaiting.get() == 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,95 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Threads parked until the other side of a queue has work for them, kept in a
+ * lock-free stack (after Treiber) so that parking and waking are O(1) however
+ * many threads wait.
+ *
+ * A thread pushes a node of its own before it parks. Every node has a state
+ * that is set once, by compare-and-set: woken by another thread, or cancelled
+ * by its own thread when it stops waiting without having been woken. A
+ * cancelled node stays in the stack and is skipped by the next push or
+ * wakeUp, so no thread ever searches the stack for its node. The last thread
+ * to park is the first woken.
+ */
+public class Waiters {
+	private static final int WAITING = 0;
+	private static final int WOKEN = 1;
+	private static final int CANCELLED = 2;
+
+	/**
+	 * A thread waiting in the stack.
+	 */
+	public static class Node {
+		private final Thread thread = Thread.currentThread();
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		/** The node below in the stack, only written before the node is pushed */
+		private Node next;
+
+		/**
+		 * Wakes the thread of this node, unless it was woken or cancelled before.
+		 * @return	Whether this call woke it.
+		 */
+		public boolean wake() {
+			if(state.compareAndSet(WAITING, WOKEN)) {
+				LockSupport.unpark(thread);
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Stops waiting. Called by the thread of the node when it is done parking,
+		 * whether it was woken or not.
+		 * @return	Whether the thread was woken before it stopped waiting.
+		 */
+		public boolean cancel() {
+			return !state.compareAndSet(WAITING, CANCELLED);
+		}
+
+		private boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+	}
+
+	private final AtomicReference<Node> head = new AtomicReference<>();
+
+	/**
+	 * Adds the current thread to the waiters. The thread should then look at the
+	 * queue once more before it parks, and cancel the node when it stops waiting.
+	 * @return	The node of the current thread.
+	 */
+	public Node push() {
+		Node node = new Node();
+		while(true) {
+			Node first = head.get();
+			Node below = first;
+			// Drop the cancelled nodes on top while we are at it
+			while(below != null && below.isCancelled()) {
+				below = below.next;
+			}
+			node.next = below;
+			if(head.compareAndSet(first, node)) {
+				return node;
+			}
+		}
+	}
+
+	/**
+	 * Wakes the waiter that parked last, if there is one.
+	 * @return	Whether a waiter was woken.
+	 */
+	public boolean wakeUp() {
+		while(true) {
+			Node first = head.get();
+			if(first == null) {
+				return false;
+			}
+			if(head.compareAndSet(first, first.next) && first.wake()) {
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,460 @@
+package round_robin;
+
+import java.util.Arrays;
+
+/**
+ * An event queue implemented as a calendar queue (R. Brown, 1988).
+ *
+ * The time axis is divided into a "year" of buckets, each covering
+ * a fixed width of time, and every event is put in the bucket its
+ * time falls into (modulo the year). Each bucket is a list sorted
+ * on time. Events are removed by walking the buckets of the current
+ * year in order, so when the bucket width matches the spacing of the
+ * events both insertion and removal take O(1) amortized time.
+ *
+ * The number of buckets is doubled or halved as the number of events
+ * grows or shrinks, and the bucket width is recalculated from a sample
+ * of the earliest events on every resize. If the event spread drifts
+ * so that operations need to look at many buckets or list nodes, the
+ * width is recalibrated as well.
+ *
+ * Events are kept in parallel arrays of primitive values, with the
+ * bucket lists linked through array indices, so no objects are
+ * created once the arrays are large enough.
+ *
+ * Events occurring at the same time are returned in the order they
+ * were inserted.
+ *
+ * @see EventQueue
+ */
+public class CalendarEventQueue implements EventQueue
+{
+	/** Marks the end of a bucket list */
+	private static final int NIL = -1;
+	/** The smallest number of buckets used */
+	private static final int MIN_BUCKETS = 4;
+	/** The largest number of events sampled when calculating a new bucket width */
+	private static final int WIDTH_SAMPLE_SIZE = 25;
+	/** The average number of buckets and nodes visited per operation that triggers a recalibration */
+	private static final int MAX_AVERAGE_COST = 8;
+
+	/** The time of the event stored in each node */
+	private long[] nodeTime;
+	/** The insertion sequence number of the event stored in each node, used to break ties */
+	private long[] nodeSequence;
+	/** The type of the event stored in each node */
+	private int[] nodeType;
+	/** The ID of the process involved in the event stored in each node */
+	private int[] nodeProcess;
+	/** The next node in the same bucket, or the next free node */
+	private int[] nodeNext;
+	/** The first node in the list of unused nodes */
+	private int freeNode;
+
+	/** The first node of each bucket */
+	private int[] buckets;
+	/** The number of buckets minus one, the number of buckets is always a power of two */
+	private int bucketMask;
+	/** The length of time covered by one bucket */
+	private long bucketWidth;
+
+	/** The bucket holding the most recently removed event */
+	private int lastBucket;
+	/** The time at which the current year of lastBucket ends */
+	private long bucketTop;
+	/** The time of the most recently removed event */
+	private long lastTime;
+
+	/** The number of events in the queue */
+	private int size;
+	/** The sequence number given to the next inserted event */
+	private long nextSequence;
+	/** Whether or not the queue may resize itself, off while sampling events */
+	private boolean resizeEnabled = true;
+
+	/** The number of operations since the costs were last inspected */
+	private int operations;
+	/** The number of buckets and nodes visited by those operations */
+	private long operationCost;
+
+	/** The number of times the buckets have been resized or recalibrated */
+	private long nofResizes;
+	/** The number of times a removal had to search all buckets for the earliest event */
+	private long nofDirectSearches;
+
+	/**
+	 * Creates a new, empty calendar queue.
+	 */
+	public CalendarEventQueue() {
+		int capacity = 2*MIN_BUCKETS;
+		nodeTime = new long[capacity];
+		nodeSequence = new long[capacity];
+		nodeType = new int[capacity];
+		nodeProcess = new int[capacity];
+		nodeNext = new int[capacity];
+		chainFreeNodes(0, capacity);
+		setBuckets(MIN_BUCKETS, 1, 0);
+	}
+
+	/**
+	 * Inserts an event in the queue, in the bucket covering its time.
+	 */
+	public void schedule(int type, long time, int process) {
+		if(freeNode == NIL) {
+			growNodes();
+		}
+		int node = freeNode;
+		freeNode = nodeNext[node];
+		nodeTime[node] = time;
+		nodeSequence[node] = nextSequence++;
+		nodeType[node] = type;
+		nodeProcess[node] = process;
+		link(node);
+		size++;
+
+		if(time < lastTime) {
+			// The event is earlier than the current position in the calendar
+			startYearAt(time);
+		}
+		if(resizeEnabled) {
+			if(size > 2*(bucketMask+1)) {
+				resize(2*(bucketMask+1));
+			}
+			else {
+				countOperation();
+			}
+		}
+	}
+
+	public long peekTime() {
+		return nodeTime[firstNode()];
+	}
+
+	public int peekType() {
+		return nodeType[firstNode()];
+	}
+
+	public int peekProcess() {
+		return nodeProcess[firstNode()];
+	}
+
+	/**
+	 * Removes the earliest event (the event with the lowest
+	 * time value) from the queue.
+	 */
+	public void removeNext() {
+		firstNode();
+		removeFirst(lastBucket);
+	}
+
+	/**
+	 * Checks whether or not the event queue is empty.
+	 * @return	Whether or not the event queue is empty.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of events in the queue.
+	 * @return	The number of events in the queue.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of times the buckets have been resized or recalibrated.
+	 * @return	The number of resizes.
+	 */
+	public long getNofResizes() {
+		return nofResizes;
+	}
+
+	/**
+	 * Returns the number of removals that found no event in the current year
+	 * and had to search all the buckets.
+	 * @return	The number of direct searches.
+	 */
+	public long getNofDirectSearches() {
+		return nofDirectSearches;
+	}
+
+	/**
+	 * Returns the current number of buckets.
+	 * @return	The number of buckets.
+	 */
+	public int getNofBuckets() {
+		return bucketMask+1;
+	}
+
+	/**
+	 * Returns the length of time currently covered by one bucket.
+	 * @return	The bucket width.
+	 */
+	public long getBucketWidth() {
+		return bucketWidth;
+	}
+
+	/**
+	 * Counts the buckets currently holding at least one event.
+	 * This walks all the buckets and is meant for inspection only.
+	 * @return	The number of non-empty buckets.
+	 */
+	public int getNofOccupiedBuckets() {
+		int occupied = 0;
+		for(int b = 0; b <= bucketMask; b++) {
+			if(buckets[b] != NIL) occupied++;
+		}
+		return occupied;
+	}
+
+	/**
+	 * Finds the length of the longest bucket list.
+	 * This walks all the events and is meant for inspection only.
+	 * @return	The largest number of events in one bucket.
+	 */
+	public int getLargestBucketLength() {
+		int largest = 0;
+		for(int b = 0; b <= bucketMask; b++) {
+			int length = 0;
+			for(int node = buckets[b]; node != NIL; node = nodeNext[node]) {
+				length++;
+			}
+			largest = Math.max(largest, length);
+		}
+		return largest;
+	}
+
+	/**
+	 * Checks if the event in node a should leave the queue before the event in node b.
+	 */
+	private boolean isBefore(int a, int b) {
+		if(nodeTime[a] != nodeTime[b]) {
+			return nodeTime[a] < nodeTime[b];
+		}
+		return nodeSequence[a] < nodeSequence[b];
+	}
+
+	/**
+	 * Returns the bucket covering the given time.
+	 */
+	private int bucketOf(long time) {
+		return (int)((time/bucketWidth) & bucketMask);
+	}
+
+	/**
+	 * Makes the year containing the given time the current one, starting at its bucket.
+	 */
+	private void startYearAt(long time) {
+		lastTime = time;
+		lastBucket = bucketOf(time);
+		bucketTop = (time/bucketWidth+1)*bucketWidth;
+	}
+
+	/**
+	 * Inserts a node in its bucket, keeping the bucket sorted.
+	 */
+	private void link(int node) {
+		int b = bucketOf(nodeTime[node]);
+		int previous = NIL;
+		int current = buckets[b];
+		while(current != NIL && isBefore(current, node)) {
+			previous = current;
+			current = nodeNext[current];
+			operationCost++;
+		}
+		nodeNext[node] = current;
+		if(previous == NIL) {
+			buckets[b] = node;
+		}
+		else {
+			nodeNext[previous] = node;
+		}
+	}
+
+	/**
+	 * Finds the node holding the earliest event, moving the current
+	 * position in the calendar to its bucket.
+	 */
+	private int firstNode() {
+		if(size == 0) {
+			throw new IndexOutOfBoundsException("The event queue is empty");
+		}
+		return buckets[peekBucket()];
+	}
+
+	/**
+	 * Removes the first event of a bucket, and shrinks the calendar if it has become sparse.
+	 */
+	private void removeFirst(int bucket) {
+		int node = buckets[bucket];
+		buckets[bucket] = nodeNext[node];
+		lastTime = nodeTime[node];
+		nodeNext[node] = freeNode;
+		freeNode = node;
+		size--;
+
+		if(resizeEnabled) {
+			if(size < (bucketMask+1)/2 && bucketMask+1 > MIN_BUCKETS) {
+				resize((bucketMask+1)/2);
+			}
+			else {
+				countOperation();
+			}
+		}
+	}
+
+	/**
+	 * Records an operation, and recalibrates the bucket width if the
+	 * operations since the last inspection have been too expensive.
+	 */
+	private void countOperation() {
+		operations++;
+		if(operations > bucketMask) {
+			if(operationCost > (long)MAX_AVERAGE_COST*operations && size > 1) {
+				resize(bucketMask+1);
+			}
+			operations = 0;
+			operationCost = 0;
+		}
+	}
+
+	/**
+	 * Redistributes all events over the given number of buckets,
+	 * using a bucket width estimated from the earliest events.
+	 */
+	private void resize(int nofBuckets) {
+		long width = estimateBucketWidth();
+		int[] oldBuckets = buckets;
+		setBuckets(nofBuckets, width, lastTime);
+		for(int b = 0; b < oldBuckets.length; b++) {
+			int node = oldBuckets[b];
+			while(node != NIL) {
+				int next = nodeNext[node];
+				link(node);
+				node = next;
+			}
+		}
+		operations = 0;
+		operationCost = 0;
+		nofResizes++;
+	}
+
+	/**
+	 * Estimates a good bucket width as three times the average separation
+	 * of the earliest events, ignoring separations more than twice the
+	 * average. The sampled events are removed and then inserted again.
+	 */
+	private long estimateBucketWidth() {
+		int samples = Math.min(size, WIDTH_SAMPLE_SIZE);
+		if(samples < 2) {
+			return bucketWidth;
+		}
+		resizeEnabled = false;
+		long savedSequence = nextSequence;
+		long savedTime = lastTime;
+		long[] times = new long[samples];
+		long[] sequences = new long[samples];
+		int[] types = new int[samples];
+		int[] processes = new int[samples];
+		for(int i = 0; i < samples; i++) {
+			int bucket = peekBucket();
+			int node = buckets[bucket];
+			times[i] = nodeTime[node];
+			sequences[i] = nodeSequence[node];
+			types[i] = nodeType[node];
+			processes[i] = nodeProcess[node];
+			removeFirst(bucket);
+		}
+		for(int i = 0; i < samples; i++) {
+			nextSequence = sequences[i];
+			schedule(types[i], times[i], processes[i]);
+		}
+		nextSequence = savedSequence;
+		startYearAt(savedTime);
+		resizeEnabled = true;
+
+		long total = times[samples-1]-times[0];
+		double average = (double)total/(samples-1);
+		long limited = 0;
+		int counted = 0;
+		for(int i = 1; i < samples; i++) {
+			long gap = times[i]-times[i-1];
+			if(gap <= 2*average) {
+				limited += gap;
+				counted++;
+			}
+		}
+		long width = counted > 0 ? 3*limited/counted : 3*(long)average;
+		return Math.max(1, width);
+	}
+
+	/**
+	 * Finds the bucket holding the earliest event, moving the current
+	 * position in the calendar to it.
+	 */
+	private int peekBucket() {
+		int i = lastBucket;
+		long top = bucketTop;
+		for(int n = 0; n <= bucketMask; n++) {
+			int node = buckets[i];
+			if(node != NIL && nodeTime[node] < top) {
+				lastBucket = i;
+				bucketTop = top;
+				operationCost += n;
+				return i;
+			}
+			i = (i+1) & bucketMask;
+			top += bucketWidth;
+		}
+
+		// No event in the coming year, find the earliest bucket head directly
+		if(resizeEnabled) nofDirectSearches++;
+		operationCost += bucketMask+1;
+		int earliest = NIL;
+		for(int b = 0; b <= bucketMask; b++) {
+			if(buckets[b] != NIL && (earliest == NIL || isBefore(buckets[b], buckets[earliest]))) {
+				earliest = b;
+			}
+		}
+		startYearAt(nodeTime[buckets[earliest]]);
+		return earliest;
+	}
+
+	/**
+	 * Creates a new, empty set of buckets.
+	 */
+	private void setBuckets(int nofBuckets, long width, long startTime) {
+		buckets = new int[nofBuckets];
+		Arrays.fill(buckets, NIL);
+		bucketMask = nofBuckets-1;
+		bucketWidth = width;
+		startYearAt(startTime);
+	}
+
+	/**
+	 * Doubles the number of nodes available for storing events.
+	 */
+	private void growNodes() {
+		int oldCapacity = nodeTime.length;
+		int capacity = 2*oldCapacity;
+		nodeTime = Arrays.copyOf(nodeTime, capacity);
+		nodeSequence = Arrays.copyOf(nodeSequence, capacity);
+		nodeType = Arrays.copyOf(nodeType, capacity);
+		nodeProcess = Arrays.copyOf(nodeProcess, capacity);
+		nodeNext = Arrays.copyOf(nodeNext, capacity);
+		chainFreeNodes(oldCapacity, capacity);
+	}
+
+	/**
+	 * Puts the nodes in the given range at the front of the list of unused nodes.
+	 */
+	private void chainFreeNodes(int from, int to) {
+		for(int node = from; node < to-1; node++) {
+			nodeNext[node] = node+1;
+		}
+		nodeNext[to-1] = NIL;
+		freeNode = from;
+	}
+}
@@ -1,113 +1,457 @@
 package round_robin;
 
-import java.util.LinkedList;
+import round_robin.scheduling.SchedulingPolicy;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.function.Supplier;
 
 /**
  * This class implements functionality associated with
  * the CPU unit of the simulated system.
+ *
+ * The CPU has one or more cores, each running one process at a time. The
+ * cores either share one run queue, or each has its own run queue. With
+ * per-core run queues a process returning from I/O goes back to the core it
+ * last ran on unless another core is idle, and the load is evened out by
+ * letting idle cores steal waiting processes, or by moving processes from
+ * the longest to the shortest run queue at regular intervals.
  */
 public class Cpu {
     /**
-     * Creates a new CPU with the given parameters.
-     * @param cpuQueue		The CPU queue to be used.
-     * @param maxCpuTime	The Round Robin time quant to be used.
-     * @param statistics	A reference to the statistics collector.
+     * How the cores share their work.
      */
+    public enum LoadBalancing {
+        /** All cores share one run queue */
+        GLOBAL,
+        /** Every core has its own run queue, and processes only move when they are placed */
+        NONE,
+        /** Every core has its own run queue, and a core with nothing to do steals a waiting process */
+        IDLE,
+        /** Every core has its own run queue, and the queues are evened out at regular intervals */
+        PERIODIC;
 
-    private final LinkedList<Process> cpuQueue;
-    private long maxCpuTime;
-    private Statistics statistics;
-    private Process activeProcess = null;
+        /**
+         * Returns the load balancing with the given lower case name.
+         * @throws IllegalArgumentException	If there is no such load balancing.
+         */
+        public static LoadBalancing forName(String name) {
+            for (LoadBalancing balancing : values()) {
+                if (balancing.getName().equals(name)) {
+                    return balancing;
+                }
+            }
+            throw new IllegalArgumentException("Unknown load balancing " + name);
+        }
 
-    public Cpu(LinkedList<Process> cpuQueue, long maxCpuTime, Statistics statistics) {
-        this.cpuQueue = cpuQueue;
-        this.maxCpuTime = maxCpuTime;
-        this.statistics = statistics;
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * One core of the CPU, and the process using it.
+     */
+    private static class Core {
+        final int index;
+        /** The run queue of this core, shared by all cores with global load balancing */
+        final SchedulingPolicy runQueue;
+        Process activeProcess = null;
+        /** The global time when the active process was switched in */
+        long dispatchTime;
+        /** The time slice given to the active process by the scheduling policy */
+        long timeSlice;
+        /** The type of the event scheduled for the active process to leave the core */
+        int scheduledType;
+        /** The time of the event scheduled for the active process to leave the core */
+        long scheduledTime;
+
+        Core(int index, SchedulingPolicy runQueue) {
+            this.index = index;
+            this.runQueue = runQueue;
+        }
+
+        int load() {
+            return runQueue.size() + (activeProcess == null ? 0 : 1);
+        }
+    }
+
+    private final Core[] cores;
+    private final LoadBalancing balancing;
+    private Statistics statistics;
+    private final EventQueue eventQueue;
+    /** The number of cores without an active process */
+    private int nofIdleCores;
 
+    /**
+     * Creates a new single core CPU with the given parameters.
+     * @param cpuQueue		The scheduling policy, which also holds the CPU queue.
+     * @param statistics	A reference to the statistics collector.
+     * @param eventQueue	The event queue in which CPU events are scheduled.
+     */
+    public Cpu(SchedulingPolicy cpuQueue, Statistics statistics, EventQueue eventQueue) {
+        this(1, LoadBalancing.GLOBAL, () -> cpuQueue, statistics, eventQueue);
     }
 
     /**
-     * Adds a process to the CPU queue, and activates (switches in) the first process
-     * in the CPU queue if the CPU is idle.
-     * @param p		The process to be added to the CPU queue.
-     * @param clock	The global time.
-     * @return		The event causing the process that was activated to leave the CPU,
-     *				or null	if no process was activated.
+     * Creates a new CPU with the given number of cores.
+     * @param nofCores		The number of cores.
+     * @param balancing		How the cores share their work.
+     * @param policies		Creates the scheduling policies holding the run queues, called
+     *						once for every core, or once in all with global load balancing.
+     * @param statistics	A reference to the statistics collector.
+     * @param eventQueue	The event queue in which CPU events are scheduled.
      */
-    public Event insertProcess(Process p, long clock) {
-        //System.out.printf("Inserting %d in cpuqueue at time %d\n", p.getProcessId(), clock);
-        cpuQueue.add(p);
-        if(isIdle()){
-            return switchProcess(clock);
+    public Cpu(int nofCores, LoadBalancing balancing, Supplier<SchedulingPolicy> policies, Statistics statistics,
+               EventQueue eventQueue) {
+        this.balancing = balancing;
+        this.statistics = statistics;
+        this.eventQueue = eventQueue;
+        cores = new Core[nofCores];
+        SchedulingPolicy shared = balancing == LoadBalancing.GLOBAL ? policies.get() : null;
+        for (int i = 0; i < nofCores; i++) {
+            cores[i] = new Core(i, shared != null ? shared : policies.get());
         }
-        return null;
+        nofIdleCores = nofCores;
+        statistics.setNofCores(nofCores);
+        statistics.loadBalancing = balancing.getName();
     }
 
     /**
-     * Activates (switches in) the first process in the CPU queue, if the queue is non-empty.
-     * The process that was using the CPU, if any, is switched out and added to the back of
-     * the CPU queue, in accordance with the Round Robin algorithm.
+     * Adds a process to a run queue, and activates (switches in) a process on the
+     * core of that queue if the core is idle. If the core is busy, the scheduling
+     * policy decides whether the new process preempts the active process.
+     * If a process was activated, the event causing it to leave the CPU is scheduled.
+     * @param p		The process to be added to a run queue.
      * @param clock	The global time.
-     * @return		The event causing the process that was activated to leave the CPU,
-     *				or null	if no process was activated.
      */
-    public Event switchProcess(long clock) {
-        if(cpuQueue.isEmpty()){
-            activeProcess = null;
-            return null;
+    public void insertProcess(Process p, long clock) {
+        Core core = selectCore(p);
+        core.runQueue.offer(p);
+        if(core.activeProcess == null){
+            switchProcess(core, clock);
         }
-        activeProcess = cpuQueue.remove();
-        activeProcess.timeSpentInReadyQueue(clock);
-        // If the process is done after this cycle, and no io is needed, end the process after processing
-        if(activeProcess.getCpuTimeNeeded() <= maxCpuTime && activeProcess.getCpuTimeNeeded() <= activeProcess.getTimeToNextIoOperation()){
-            return new Event(Event.END_PROCESS, clock+activeProcess.getCpuTimeNeeded());
+        else if(balancing == LoadBalancing.GLOBAL){
+            for(Core c : cores){
+                if(c.runQueue.shouldPreempt(c.activeProcess, clock-c.dispatchTime, p)){
+                    preempt(c, clock);
+                    break;
+                }
+            }
         }
-        // If there is a io request in this cycle, send an io request
-        else if(activeProcess.getTimeToNextIoOperation() <= maxCpuTime){
-            return new Event(Event.IO_REQUEST, clock+activeProcess.getTimeToNextIoOperation());
+        else if(core.runQueue.shouldPreempt(core.activeProcess, clock-core.dispatchTime, p)){
+            preempt(core, clock);
         }
+    }
 
-        else{
-            // Let the process use its time quantum
-            return new Event(Event.SWITCH_PROCESS, clock+maxCpuTime);
+    /**
+     * Called when the active process of a core has used its time slice. The process
+     * is switched out and returned to the run queue, and the next process chosen by
+     * the scheduling policy is switched in.
+     * @param core	The index of the core.
+     * @param clock	The global time.
+     */
+    public void timeSliceExpired(int core, long clock) {
+        requeueActiveProcess(cores[core], clock);
+    }
+
+    /**
+     * Called when the active process of a core left the CPU (for example to perform
+     * I/O), and a new process needs to be switched in.
+     * If a new process was switched in, the event causing it to leave the CPU is scheduled.
+     * @param core	The index of the core.
+     * @param clock	The global time.
+     */
+    public void activeProcessLeft(int core, long clock) {
+        activeProcessLeft(cores[core], clock);
+    }
+
+    /**
+     * Finds the core an event taken from the event queue belongs to. An event
+     * scheduled for a process that has since been preempted is stale, and belongs
+     * to no core.
+     * @param eventType		The type of the event.
+     * @param eventTime		The time of the event.
+     * @param processId		The ID of the process involved in the event.
+     * @return				The index of the core, or -1 if the event is stale.
+     */
+    public int findCore(int eventType, long eventTime, int processId) {
+        for(Core core : cores){
+            if(core.activeProcess != null && (int)core.activeProcess.getProcessId() == processId){
+                return eventType == core.scheduledType && eventTime == core.scheduledTime ? core.index : -1;
+            }
         }
+        return -1;
     }
 
     /**
-     * Called when the active process left the CPU (for example to perform I/O),
-     * and a new process needs to be switched in.
-     * @return	The event generated by the process switch, or null if no new
-     *			process was switched in.
+     * Evens out the run queues by moving waiting processes from the most to the
+     * least loaded core, until their loads differ by at most one process.
+     * Does nothing when the cores share one run queue.
+     * @param clock	The global time.
      */
-    public Event activeProcessLeft(long clock) {
-        if(activeProcess != null) activeProcess.timeSpentInCpu(clock);
-        return switchProcess(clock);
+    public void balance(long clock) {
+        if(balancing == LoadBalancing.GLOBAL){
+            return;
+        }
+        while(true){
+            Core busiest = cores[0];
+            Core idlest = cores[0];
+            for(Core core : cores){
+                if(core.load() > busiest.load()) busiest = core;
+                if(core.load() < idlest.load()) idlest = core;
+            }
+            if(busiest.load()-idlest.load() <= 1 || busiest.runQueue.isEmpty()){
+                return;
+            }
+            idlest.runQueue.offer(busiest.runQueue.poll());
+            statistics.nofBalancingMoves++;
+            if(idlest.activeProcess == null){
+                switchProcess(idlest, clock);
+            }
+        }
     }
 
     /**
-     * Returns the process currently using the CPU.
-     * @return	The process currently using the CPU.
+     * Returns the process currently using the first core.
+     * @return	The process currently using the first core.
      */
     public Process getActiveProcess() {
-        return activeProcess;
+        return cores[0].activeProcess;
+    }
+
+    /**
+     * Returns the process currently using the given core.
+     * @param core	The index of the core.
+     * @return		The process currently using the core.
+     */
+    public Process getActiveProcess(int core) {
+        return cores[core].activeProcess;
+    }
+
+    /**
+     * Returns the run queue of the given core.
+     * @param core	The index of the core.
+     */
+    public SchedulingPolicy getRunQueue(int core) {
+        return cores[core].runQueue;
+    }
+
+    /**
+     * Returns the processes waiting for any core. With one run queue for all
+     * cores that is the run queue itself. Otherwise it is a read-only view of
+     * the run queues, core by core, each in the order of its policy.
+     */
+    public Queue<Process> getRunQueues() {
+        if (cores.length == 1 || balancing == LoadBalancing.GLOBAL) {
+            return cores[0].runQueue;
+        }
+        return new AbstractQueue<Process>() {
+            @Override
+            public Iterator<Process> iterator() {
+                return Arrays.stream(cores).flatMap(core -> core.runQueue.stream()).iterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Core core : cores) {
+                    size += core.runQueue.size();
+                }
+                return size;
+            }
+
+            @Override
+            public boolean offer(Process p) {
+                throw new UnsupportedOperationException("Processes are added to the run queue of a core");
+            }
+
+            @Override
+            public Process poll() {
+                throw new UnsupportedOperationException("Processes are taken from the run queue of a core");
+            }
+
+            @Override
+            public Process peek() {
+                Iterator<Process> iterator = iterator();
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
     }
 
+    public int getNofCores() {
+        return cores.length;
+    }
+
+    public LoadBalancing getLoadBalancing() {
+        return balancing;
+    }
 
     /**
      * This method is called when a discrete amount of time has passed.
      * @param timePassed	The amount of time that has passed since the last call to this method.
      */
     public void timePassed(long timePassed) {
-        if(activeProcess != null) statistics.totalBusyCpuTime += timePassed;
-        statistics.cpuQueueLengthTime += cpuQueue.size()*timePassed;
-        if (cpuQueue.size() > statistics.cpuQueueLargestLength) {
-            statistics.cpuQueueLargestLength = cpuQueue.size();
+        statistics.totalBusyCpuTime += (cores.length-nofIdleCores)*timePassed;
+        long queued = 0;
+        for(Core core : cores){
+            if(core.activeProcess != null) statistics.coreBusyTime[core.index] += timePassed;
+            if(balancing == LoadBalancing.GLOBAL) continue;
+            int size = core.runQueue.size();
+            queued += size;
+            statistics.coreQueueLengthTime[core.index] += size*timePassed;
+            if(size > statistics.coreQueueLargestLength[core.index]){
+                statistics.coreQueueLargestLength[core.index] = size;
+            }
+        }
+        if(balancing == LoadBalancing.GLOBAL) queued = cores[0].runQueue.size();
+        statistics.cpuQueueLengthTime += queued*timePassed;
+        if (queued > statistics.cpuQueueLargestLength) {
+            statistics.cpuQueueLargestLength = queued;
         }
 
     }
 
+    /**
+     * Checks whether or not every core is idle.
+     */
     public boolean isIdle(){
-        return activeProcess == null;
+        return nofIdleCores == cores.length;
+    }
+
+    /**
+     * Chooses the core whose run queue a process is added to: the core it last
+     * ran on if that core is idle, else any idle core, else the core it last ran
+     * on, or the least loaded core for a process that has not run yet.
+     */
+    private Core selectCore(Process p) {
+        int last = p.getLastCore();
+        if(last >= 0 && cores[last].activeProcess == null){
+            return cores[last];
+        }
+        if(nofIdleCores > 0){
+            for(Core core : cores){
+                if(core.activeProcess == null) return core;
+            }
+        }
+        if(last >= 0){
+            return cores[last];
+        }
+        Core least = cores[0];
+        if(balancing != LoadBalancing.GLOBAL){
+            for(Core core : cores){
+                if(core.load() < least.load()) least = core;
+            }
+        }
+        return least;
+    }
+
+    /**
+     * Activates (switches in) the process chosen by the scheduling policy of a core,
+     * if its run queue is non-empty. With idle load balancing a core with an empty run
+     * queue steals a process from the core with the longest run queue.
+     * If a process was activated, the event causing it to leave the CPU is scheduled:
+     * the end of the process, its next I/O request, or the end of its time slice,
+     * whichever comes first.
+     */
+    private void switchProcess(Core core, long clock) {
+        Process p = core.runQueue.poll();
+        if(p == null && balancing == LoadBalancing.IDLE){
+            p = steal();
+        }
+        setActiveProcess(core, p);
+        if(p == null){
+            return;
+        }
+        p.timeSpentInReadyQueue(clock);
+        if(p.getLastCore() >= 0 && p.getLastCore() != core.index){
+            statistics.nofMigrations++;
+        }
+        p.setLastCore(core.index);
+        core.dispatchTime = clock;
+        core.timeSlice = core.runQueue.getTimeSlice(p);
+        long cpuTimeNeeded = p.getCpuTimeNeeded();
+        long timeToNextIo = p.getTimeToNextIoOperation();
+        // If the process is done after this cycle, and no io is needed, end the process after processing
+        if(cpuTimeNeeded <= core.timeSlice && cpuTimeNeeded <= timeToNextIo){
+            schedule(core, Event.END_PROCESS, clock+cpuTimeNeeded);
+        }
+        // If there is a io request in this cycle, send an io request
+        else if(timeToNextIo <= core.timeSlice){
+            schedule(core, Event.IO_REQUEST, clock+timeToNextIo);
+        }
+        else{
+            // Let the process use its time slice
+            schedule(core, Event.SWITCH_PROCESS, clock+core.timeSlice);
+        }
+    }
+
+    /**
+     * Takes the next waiting process from the longest run queue, or returns null
+     * if all run queues are empty.
+     */
+    private Process steal() {
+        Core victim = cores[0];
+        for(Core core : cores){
+            if(core.runQueue.size() > victim.runQueue.size()) victim = core;
+        }
+        Process p = victim.runQueue.poll();
+        if(p != null){
+            statistics.nofSteals++;
+        }
+        return p;
+    }
+
+    private void activeProcessLeft(Core core, long clock) {
+        leaveCpu(core, clock);
+        switchProcess(core, clock);
+    }
+
+    /**
+     * Accounts for the CPU time the active process of a core has used and tells
+     * the scheduling policy it left, without switching in another process.
+     */
+    private void leaveCpu(Core core, long clock) {
+        Process p = core.activeProcess;
+        if(p != null){
+            p.timeSpentInCpu(clock);
+            long used = clock-core.dispatchTime;
+            core.runQueue.processLeftCpu(p, used, used >= core.timeSlice);
+        }
+    }
+
+    private void preempt(Core core, long clock) {
+        statistics.nofPreemptions++;
+        requeueActiveProcess(core, clock);
+    }
+
+    /**
+     * Switches out the active process of a core, returns it to the run queue and
+     * switches in the process chosen by the scheduling policy, which may be the same one.
+     * The process is back in the run queue before the switch, so a core with
+     * nothing else to run keeps it rather than stealing from another core.
+     */
+    private void requeueActiveProcess(Core core, long clock) {
+        Process p = core.activeProcess;
+        leaveCpu(core, clock);
+        if(p != null){
+            core.runQueue.offer(p);
+        }
+        switchProcess(core, clock);
+    }
+
+    private void setActiveProcess(Core core, Process p) {
+        if(core.activeProcess == null && p != null) nofIdleCores--;
+        if(core.activeProcess != null && p == null) nofIdleCores++;
+        core.activeProcess = p;
+    }
+
+    private void schedule(Core core, int eventType, long eventTime) {
+        core.scheduledType = eventType;
+        core.scheduledTime = eventTime;
+        eventQueue.schedule(eventType, eventTime, (int)core.activeProcess.getProcessId());
     }
 
 }
@@ -2,10 +2,12 @@ package round_robin;
 
 /**
  * This class contains information about an event.
+ * The event queues store events as primitive values, objects of
+ * this class are only used as a view of a single event.
  *
  * @see EventQueue
  */
-public class Event implements Comparable
+public class Event implements Comparable<Event>
 {
     /** Event type describing the arrival of a new process */
 	public static final int NEW_PROCESS = 1;
@@ -17,11 +19,18 @@ public class Event implements Comparable
 	public static final int IO_REQUEST = 4;
     /** Event type describing the end of the current I/O operation */
 	public static final int END_IO = 5;
+    /** Event type describing the periodic balancing of the run queues of the CPU cores */
+	public static final int BALANCE_LOAD = 6;
+
+	/** Process ID used for events not involving a particular process */
+	public static final int NO_PROCESS = 0;
 
     /** The sort of event, see above. */
 	private int type;
 	/** The time at which the event will occur */
 	private long time;
+	/** The ID of the process involved in the event */
+	private int process;
 
 	/**
 	 * Creates a new event with the given parameters.
@@ -29,8 +38,19 @@ public class Event implements Comparable
 	 * @param time	The time at which the event will occur.
 	 */
 	public Event(int type, long time) {
+		this(type, time, NO_PROCESS);
+	}
+
+	/**
+	 * Creates a new event with the given parameters.
+	 * @param type		The type of event.
+	 * @param time		The time at which the event will occur.
+	 * @param process	The ID of the process involved in the event.
+	 */
+	public Event(int type, long time, int process) {
 		this.type = type;
 		this.time = time;
+		this.process = process;
 	}
 
 	/**
@@ -50,16 +70,22 @@ public class Event implements Comparable
 	}
 
 	/**
-	 * Compares the time of two events. This method is used when sorting
-	 * the list of events maintained by the EventQueue class.
-	 * @param o	The event to compare this event with.
+	 * Gets the ID of the process involved in this event.
+	 * @return	The process ID, or NO_PROCESS.
+	 */
+	public int getProcess() {
+		return process;
+	}
+
+	/**
+	 * Compares the time of two events.
+	 * @param e	The event to compare this event with.
 	 * @return	A negative number if this event occurs before the other event,
 	 *			0 if they occur at the same time, and a positive number if the other
 	 *			event occurs before this event.
 	 * @see	java.lang.Comparable
 	 */
-	public int compareTo(Object o) {
-		Event e = (Event)o;
-		return (int)(time-e.time);
+	public int compareTo(Event e) {
+		return Long.compare(time, e.time);
 	}
 }
@@ -1,60 +1,85 @@
 package round_robin;
 
-import java.util.*;
-
 /**
- * This class maintains a queue of events used for
- * simulating the behaviour of the system. Events are
- * kept in a cronologically sorted list. This class is
- * an example of a priority queue (event time being the
- * priority in this case).
+ * This interface describes a queue of events used for
+ * simulating the behaviour of the system. Events leave the
+ * queue in chronological order, and events occurring at the
+ * same time leave the queue in the order they were inserted.
+ * This is an example of a priority queue (event time being
+ * the priority in this case).
+ *
+ * Implementations store events as primitive values, so events
+ * can be scheduled and handled with the schedule, peek and
+ * removeNext methods without creating any objects. The methods
+ * taking and returning Event objects are kept for convenience.
+ *
+ * @see HeapEventQueue
+ * @see CalendarEventQueue
  */
-public class EventQueue
+public interface EventQueue
 {
-	/** The list of events */
-	private ArrayList<Event> events;
+	/**
+	 * Inserts an event in the queue.
+	 * @param type		The type of event, see Event.
+	 * @param time		The time at which the event will occur.
+	 * @param process	The ID of the process involved, or Event.NO_PROCESS.
+	 */
+	void schedule(int type, long time, int process);
 
 	/**
-	 * Creates a new Event Queue.
+	 * Returns the time of the earliest event in the queue.
+	 * @return	The time of the earliest event.
 	 */
-	public EventQueue() {
-		events = new ArrayList<>();
-	}
+	long peekTime();
+
+	/**
+	 * Returns the type of the earliest event in the queue.
+	 * @return	The type of the earliest event.
+	 */
+	int peekType();
+
+	/**
+	 * Returns the ID of the process involved in the earliest event in the queue.
+	 * @return	The process ID of the earliest event, or Event.NO_PROCESS.
+	 */
+	int peekProcess();
+
+	/**
+	 * Removes the earliest event (the event with the lowest
+	 * time value) from the queue.
+	 */
+	void removeNext();
+
+	/**
+	 * Checks whether or not the event queue is empty.
+	 * @return	Whether or not the event queue is empty.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Returns the number of events in the queue.
+	 * @return	The number of events in the queue.
+	 */
+	int size();
 
 	/**
 	 * Inserts an event in the queue.
-	 * The event is added to the event list, which
-	 * is then resorted.
-	 * @param event	The event to be inserted.
+	 * @param event	The event to be inserted, null is ignored.
 	 */
-    public void insertEvent(Event event) {
+	default void insertEvent(Event event) {
 		if(event != null) {
-			events.add(event);
-			Collections.sort(events);
+			schedule(event.getType(), event.getTime(), event.getProcess());
 		}
-    }
+	}
 
 	/**
 	 * Removes and returns the earliest event (the event
 	 * with the lowest time value) from the queue.
 	 * @return	The event with the lowest time value in the queue.
 	 */
-    public Event getNextEvent() {
-		  return events.remove(0);
-    }
-
-    /**
-     * Checks whether or not the event queue is empty.
-     * @return	Whether or not the event queue is empty.
-     */
-    public boolean isEmpty() {
-		return events.size() == 0;
+	default Event getNextEvent() {
+		Event event = new Event(peekType(), peekTime(), peekProcess());
+		removeNext();
+		return event;
 	}
 }
-
-
-
-
-
-
-
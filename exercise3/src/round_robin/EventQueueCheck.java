@@ -0,0 +1,152 @@
+package round_robin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that the event queues hand out events in the same order as the
+ * original event queue, a list sorted again after every insert. Seeded random
+ * traces of inserts and removals are replayed against the original queue and
+ * each queue being checked, side by side, and every event removed is compared.
+ * Event times are drawn from a narrow window after the time of the last event
+ * removed, as in the simulator, so many events share a time and the order of
+ * ties is checked as well.
+ *
+ * Prints a line per queue and exits with status 1 if any queue differs.
+ */
+public class EventQueueCheck {
+    private static final String USAGE =
+            "Usage: java round_robin.EventQueueCheck [options]\n" +
+            "  --traces <n>           Random traces replayed against every queue (default 200)\n" +
+            "  --operations <n>       Inserts and removals in each trace (default 5000)\n" +
+            "  --window <ms>          Events are scheduled up to this long after the current time (default 20)\n" +
+            "  --seed <number>        Seed of the random numbers (default random)";
+
+    /** The names of the queues checked */
+    private static final String[] QUEUES = {"heap", "calendar"};
+
+    /**
+     * The original event queue: a list of events, sorted by time after every
+     * insert. The sort is stable, so events at the same time leave in the order
+     * they were inserted.
+     */
+    private static class SortedListEventQueue {
+        private final ArrayList<Event> events = new ArrayList<>();
+
+        void insertEvent(Event event) {
+            events.add(event);
+            Collections.sort(events);
+        }
+
+        Event getNextEvent() {
+            return events.remove(0);
+        }
+
+        boolean isEmpty() {
+            return events.isEmpty();
+        }
+    }
+
+    public static void main(String args[]) {
+        int traces = 200;
+        int operations = 5000;
+        int window = 20;
+        long seed = new SplittableRandom().nextLong();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String flag = args[i];
+                if (flag.equals("--help") || flag.equals("-h")) {
+                    exitWithUsage(null);
+                }
+                if (i+1 == args.length) {
+                    exitWithUsage("Missing value for " + flag);
+                }
+                String value = args[++i];
+                switch (flag) {
+                    case "--traces": traces = Integer.parseInt(value); break;
+                    case "--operations": operations = Integer.parseInt(value); break;
+                    case "--window": window = Integer.parseInt(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    default: exitWithUsage("Unknown option " + flag);
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            exitWithUsage("Not a number: " + nfe.getMessage());
+        }
+        if (traces < 1 || operations < 1 || window < 1) {
+            exitWithUsage("All values must be at least 1.");
+        }
+
+        System.out.println("Replaying " + traces + " traces of " + operations + " operations, seed " + seed);
+        boolean failed = false;
+        for (String name : QUEUES) {
+            String problem = null;
+            long removed = 0;
+            // Every queue sees the same traces
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int t = 0; t < traces && problem == null; t++) {
+                EventQueue queue = HeadlessApplication.createEventQueue(name);
+                SortedListEventQueue original = new SortedListEventQueue();
+                long now = 0;
+                for (int op = 0; op < operations && problem == null; op++) {
+                    // Insert a little more often than remove, so the queues grow and shrink
+                    if (original.isEmpty() || random.nextInt(100) < 55) {
+                        Event event = new Event(random.nextInt(Event.NEW_PROCESS, Event.BALANCE_LOAD+1),
+                                now + random.nextInt(window), random.nextInt(100));
+                        original.insertEvent(event);
+                        queue.insertEvent(event);
+                    } else {
+                        Event expected = original.getNextEvent();
+                        now = expected.getTime();
+                        problem = compare(expected, queue, t, op);
+                        removed++;
+                    }
+                }
+                while (problem == null && !original.isEmpty()) {
+                    problem = compare(original.getNextEvent(), queue, t, operations);
+                    removed++;
+                }
+                if (problem == null && !queue.isEmpty()) {
+                    problem = "trace " + t + " left " + queue.size() + " events the original queue did not have";
+                }
+            }
+            System.out.println(String.format("%-10s %,12d events removed  %s",
+                    name, removed, problem == null ? "same order" : "DIFFERS, " + problem));
+            failed |= problem != null;
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Removes the next event from the queue and compares it with the event the
+     * original queue removed.
+     * @return  A description of the difference, or null if the events are the same.
+     */
+    private static String compare(Event expected, EventQueue queue, int trace, int operation) {
+        if (queue.isEmpty()) {
+            return "trace " + trace + ", operation " + operation + ": empty, expected " + describe(expected);
+        }
+        Event actual = queue.getNextEvent();
+        if (actual.getType() != expected.getType() || actual.getTime() != expected.getTime()
+                || actual.getProcess() != expected.getProcess()) {
+            return "trace " + trace + ", operation " + operation + ": " + describe(actual) +
+                    ", expected " + describe(expected);
+        }
+        return null;
+    }
+
+    private static String describe(Event event) {
+        return "type " + event.getType() + " at " + event.getTime() + " for process " + event.getProcess();
+    }
+
+    private static void exitWithUsage(String message) {
+        if (message != null) {
+            System.out.println(message);
+        }
+        System.out.println(USAGE);
+        System.exit(message == null ? 0 : 1);
+    }
+}
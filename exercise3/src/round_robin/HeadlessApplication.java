@@ -0,0 +1,185 @@
+package round_robin;
+
+import round_robin.scheduling.SchedulingPolicy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.SplittableRandom;
+
+/**
+ * Runs the simulator without a GUI, for batch runs on machines
+ * without a display. No callbacks are registered and nothing sleeps,
+ * so the simulation runs as fast as possible. The statistics report
+ * is followed by the wall-clock time and the number of events
+ * handled per second.
+ */
+public class HeadlessApplication {
+    private static final String USAGE =
+            "Usage: java round_robin.HeadlessApplication [options]\n" +
+            "  --memory <KB>          Memory size (default 2048)\n" +
+            "  --quantum <ms>         Maximum uninterrupted cpu time for a process (default 500)\n" +
+            "  --io-time <ms>         Average I/O operation time (default 225)\n" +
+            "  --length <ms>          Simulation length (default 250000)\n" +
+            "  --arrival <ms>         Average time between process arrivals (default 5000)\n" +
+            "  --policy <name>        CPU scheduling policy: fcfs, rr, sjf, srt, mlfq or cfs (default rr)\n" +
+            "  --cores <n>            Number of CPU cores (default 1)\n" +
+            "  --balancing <mode>     Sharing of work between cores: global (one shared run queue), or\n" +
+            "                         per-core run queues with none, idle (stealing) or periodic (default global)\n" +
+            "  --balance-interval <ms> Time between periodic balancing of the run queues (default 100)\n" +
+            "  --queue heap|calendar  Event queue implementation (default heap)\n" +
+            "  --seed <number>        Seed of the random numbers (default random)";
+
+    public static void main(String args[]) {
+        long memorySize = 2048;
+        long maxCpuTime = 500;
+        long avgIoTime = 225;
+        long simulationLength = 250000;
+        long avgArrivalInterval = 5000;
+        String policy = "rr";
+        int nofCores = 1;
+        String balancing = "global";
+        long balanceInterval = 100;
+        String queue = "heap";
+        long seed = new SplittableRandom().nextLong();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String flag = args[i];
+                if (flag.equals("--help") || flag.equals("-h")) {
+                    exitWithUsage(null);
+                }
+                if (i+1 == args.length) {
+                    exitWithUsage("Missing value for " + flag);
+                }
+                String value = args[++i];
+                switch (flag) {
+                    case "--memory": memorySize = Long.parseLong(value); break;
+                    case "--quantum": maxCpuTime = Long.parseLong(value); break;
+                    case "--io-time": avgIoTime = Long.parseLong(value); break;
+                    case "--length": simulationLength = Long.parseLong(value); break;
+                    case "--arrival": avgArrivalInterval = Long.parseLong(value); break;
+                    case "--policy": policy = value; break;
+                    case "--cores": nofCores = Integer.parseInt(value); break;
+                    case "--balancing": balancing = value; break;
+                    case "--balance-interval": balanceInterval = Long.parseLong(value); break;
+                    case "--queue": queue = value; break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    default: exitWithUsage("Unknown option " + flag);
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            exitWithUsage("Not a number: " + nfe.getMessage());
+        }
+        if (memorySize < 400) {
+            exitWithUsage("Memory size must be at least 400 KB.");
+        }
+        if (simulationLength < 1) {
+            exitWithUsage("Simulation length must be at least 1 ms.");
+        }
+        checkCores(nofCores, balanceInterval);
+
+        EventQueue eventQueue = createEventQueue(queue);
+        String policyName = policy;
+        long quantum = maxCpuTime;
+        createPolicy(policyName, quantum);
+        Simulator simulator = new Simulator(memorySize, () -> SchedulingPolicy.create(policyName, quantum), nofCores,
+                createLoadBalancing(balancing), balanceInterval, avgIoTime, simulationLength, avgArrivalInterval,
+                eventQueue, seed);
+        System.out.println("Random seed: " + simulator.getSeed());
+        run(simulator);
+    }
+
+    /**
+     * Runs a simulation to its end, and prints the wall-clock time spent and
+     * the event rate after the statistics report.
+     * @param simulator	The simulator to run.
+     */
+    static void run(Simulator simulator) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+        simulator.simulate();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes(threads) - allocatedBefore;
+
+        long events = simulator.getNofHandledEvents();
+        System.out.println();
+        System.out.println("Wall-clock time:                                              "+elapsed/1000000+" ms");
+        System.out.println("Events handled:                                               "+events);
+        System.out.println("Events per second:                                            "+(long)(events*1e9/Math.max(elapsed, 1)));
+        if (allocatedBefore >= 0 && events > 0) {
+            System.out.println("Bytes allocated per event:                                    "+(float)allocated/events);
+        }
+    }
+
+    static EventQueue createEventQueue(String name) {
+        switch (name) {
+            case "heap": return new HeapEventQueue();
+            case "calendar": return new CalendarEventQueue();
+            default:
+                exitWithUsage("Unknown event queue " + name);
+                return null;
+        }
+    }
+
+    /**
+     * Creates the scheduling policy with the given name, or exits with the usage
+     * message if there is no such policy.
+     * @param name		The name of the policy.
+     * @param quantum	The time quant of the policies that use one.
+     */
+    static SchedulingPolicy createPolicy(String name, long quantum) {
+        try {
+            return SchedulingPolicy.create(name, quantum);
+        } catch (IllegalArgumentException iae) {
+            exitWithUsage(iae.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the load balancing with the given name, or exits with the usage
+     * message if there is no such load balancing.
+     * @param name	The name of the load balancing.
+     */
+    static Cpu.LoadBalancing createLoadBalancing(String name) {
+        try {
+            return Cpu.LoadBalancing.forName(name);
+        } catch (IllegalArgumentException iae) {
+            exitWithUsage(iae.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Exits with the usage message if the number of cores or the balance interval
+     * is not positive.
+     */
+    static void checkCores(int nofCores, long balanceInterval) {
+        if (nofCores < 1 || balanceInterval < 1) {
+            exitWithUsage("Use at least 1 core and a balance interval of at least 1 ms.");
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread, or -1 if the
+     * JVM can not measure it.
+     */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static void exitWithUsage(String message) {
+        if (message != null) {
+            System.out.println(message);
+        }
+        System.out.println(USAGE);
+        System.exit(message == null ? 0 : 1);
+    }
+}
@@ -0,0 +1,166 @@
+package round_robin;
+
+import java.util.Arrays;
+
+/**
+ * An event queue keeping its events in a binary min-heap ordered
+ * by event time. Inserting and removing an event both take
+ * O(log n) time.
+ *
+ * The heap is stored as parallel arrays of primitive values,
+ * so no objects are created once the arrays are large enough.
+ *
+ * Events occurring at the same time are returned in the order
+ * they were inserted.
+ *
+ * @see EventQueue
+ */
+public class HeapEventQueue implements EventQueue
+{
+	/** The initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The time of each event in the heap, the earliest event is at index 0 */
+	private long[] time;
+	/** The insertion sequence number of each event in the heap, used to break ties */
+	private long[] sequence;
+	/** The type of each event in the heap */
+	private int[] type;
+	/** The ID of the process involved in each event in the heap */
+	private int[] process;
+	/** The number of events in the heap */
+	private int size;
+	/** The sequence number given to the next inserted event */
+	private long nextSequence;
+
+	/**
+	 * Creates a new, empty heap based event queue.
+	 */
+	public HeapEventQueue() {
+		time = new long[INITIAL_CAPACITY];
+		sequence = new long[INITIAL_CAPACITY];
+		type = new int[INITIAL_CAPACITY];
+		process = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Inserts an event in the queue.
+	 * The event is added at the bottom of the heap
+	 * and sifted up to its place.
+	 */
+	public void schedule(int eventType, long eventTime, int eventProcess) {
+		if(size == time.length) {
+			int capacity = 2*size;
+			time = Arrays.copyOf(time, capacity);
+			sequence = Arrays.copyOf(sequence, capacity);
+			type = Arrays.copyOf(type, capacity);
+			process = Arrays.copyOf(process, capacity);
+		}
+		long eventSequence = nextSequence++;
+		int index = size++;
+		while(index > 0) {
+			int parent = (index-1) >>> 1;
+			if(!before(eventTime, eventSequence, parent)) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		set(index, eventTime, eventSequence, eventType, eventProcess);
+	}
+
+	public long peekTime() {
+		checkNotEmpty();
+		return time[0];
+	}
+
+	public int peekType() {
+		checkNotEmpty();
+		return type[0];
+	}
+
+	public int peekProcess() {
+		checkNotEmpty();
+		return process[0];
+	}
+
+	/**
+	 * Removes the earliest event. The last event in the heap
+	 * replaces it and is sifted down to its place.
+	 */
+	public void removeNext() {
+		checkNotEmpty();
+		size--;
+		long lastTime = time[size];
+		long lastSequence = sequence[size];
+		int lastType = type[size];
+		int lastProcess = process[size];
+
+		int index = 0;
+		int half = size >>> 1;
+		while(index < half) {
+			int child = 2*index+1;
+			int right = child+1;
+			if(right < size && before(time[right], sequence[right], child)) {
+				child = right;
+			}
+			if(before(lastTime, lastSequence, child)) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		set(index, lastTime, lastSequence, lastType, lastProcess);
+	}
+
+    /**
+     * Checks whether or not the event queue is empty.
+     * @return	Whether or not the event queue is empty.
+     */
+    public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of events in the queue.
+	 * @return	The number of events in the queue.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void checkNotEmpty() {
+		if(size == 0) {
+			throw new IndexOutOfBoundsException("The event queue is empty");
+		}
+	}
+
+	/**
+	 * Checks if an event with the given time, inserted as number
+	 * eventSequence, should leave the queue before the event at the
+	 * given heap index.
+	 */
+	private boolean before(long eventTime, long eventSequence, int index) {
+		if(eventTime != time[index]) {
+			return eventTime < time[index];
+		}
+		return eventSequence < sequence[index];
+	}
+
+	/**
+	 * Copies the event at one heap index to another.
+	 */
+	private void move(int from, int to) {
+		time[to] = time[from];
+		sequence[to] = sequence[from];
+		type[to] = type[from];
+		process[to] = process[from];
+	}
+
+	private void set(int index, long eventTime, long eventSequence, int eventType, int eventProcess) {
+		time[index] = eventTime;
+		sequence[index] = eventSequence;
+		type[index] = eventType;
+		process[index] = eventProcess;
+	}
+}
@@ -1,7 +1,7 @@
 package round_robin;
 
-import java.util.LinkedList;
-import java.util.Random;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
 
 /**
  * This class implements functionality associated with
@@ -9,52 +9,54 @@ import java.util.Random;
  */
 public class Io {
     private Process activeProcess = null;
-    private final LinkedList<Process> ioQueue;
+    private final ArrayDeque<Process> ioQueue;
     private final long avgIoTime;
     private final Statistics statistics;
+    private final EventQueue eventQueue;
+    private final SplittableRandom ioDurationRandom;
     /**
      * Creates a new I/O device with the given parameters.
      * @param ioQueue		The I/O queue to be used.
      * @param avgIoTime		The average duration of an I/O operation.
      * @param statistics	A reference to the statistics collector.
+     * @param eventQueue	The event queue in which I/O events are scheduled.
+     * @param ioDurationRandom	The random number stream used to draw the durations of I/O operations.
      */
-    public Io(LinkedList<Process> ioQueue, long avgIoTime, Statistics statistics) {
-        // Incomplete
+    public Io(ArrayDeque<Process> ioQueue, long avgIoTime, Statistics statistics, EventQueue eventQueue,
+              SplittableRandom ioDurationRandom) {
         this.ioQueue = ioQueue;
         this.avgIoTime = avgIoTime;
         this.statistics = statistics;
+        this.eventQueue = eventQueue;
+        this.ioDurationRandom = ioDurationRandom;
     }
 
     /**
      * Adds a process to the I/O queue, and initiates an I/O operation
-     * if the device is free.
+     * if the device is free. If an operation was initiated, the event ending it is scheduled.
      * @param requestingProcess	The process to be added to the I/O queue.
      * @param clock				The time of the request.
-     * @return					The event ending the I/O operation, or null
-     *							if no operation was initiated.
      */
-    public Event addIoRequest(Process requestingProcess, long clock) {
+    public void addIoRequest(Process requestingProcess, long clock) {
         ioQueue.add(requestingProcess);
-        if(activeProcess != null){
-            return null;
+        if(activeProcess == null){
+            startIoOperation(clock);
         }
-        return startIoOperation(clock);
     }
 
 
     /**
      * Starts a new I/O operation if the I/O device is free and there are
-     * processes waiting to perform I/O.
+     * processes waiting to perform I/O. If an operation was initiated,
+     * the event describing its end is scheduled.
      * @param clock		The global time.
-     * @return			An event describing the end of the I/O operation that was started,
-     *					or null	if no operation was initiated.
      */
-    public Event startIoOperation(long clock) {
-        if(ioQueue.isEmpty()) return null;
+    public void startIoOperation(long clock) {
+        if(ioQueue.isEmpty()) return;
         activeProcess = ioQueue.remove();
         activeProcess.timeSpentInIOQueue(clock);
         // Make IO-time a bit random (100 -> 200% of avgIoTime)
-        return new Event(Event.END_IO, (long) (clock+avgIoTime + avgIoTime*Math.random()));
+        eventQueue.schedule(Event.END_IO, (long) (clock+avgIoTime + avgIoTime*ioDurationRandom.nextDouble()), (int)activeProcess.getProcessId());
     }
 
     /**
@@ -73,7 +75,6 @@ public class Io {
      * @return	The process that was doing I/O, or null if no process was doing I/O.
      */
     public Process removeActiveProcess(long clock) {
-        // Incomplete
         Process p = activeProcess;
         p.timeSpentInIO(clock);
         activeProcess = null;
@@ -0,0 +1,112 @@
+package round_robin;
+
+/**
+ * Summarizes independent observations of one metric, for example the
+ * throughput of each of a number of replications, by their mean and a
+ * 95% confidence interval based on Student's t distribution.
+ */
+public class MetricSummary
+{
+	/** Two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom */
+	private static final double[] T_QUANTILES = {
+		12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+		2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+		2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+	};
+
+	/** The name of the metric */
+	private final String name;
+	/** The number of observations */
+	private long count;
+	/** The mean of the observations */
+	private double mean;
+	/** The sum of squared differences from the mean */
+	private double squaredDeviations;
+
+	/**
+	 * Creates an empty summary.
+	 * @param name	The name of the metric.
+	 */
+	public MetricSummary(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Adds an observation. NaN values, for example the average time in system of
+	 * a run where no process completed, are ignored.
+	 * @param value	The observed value.
+	 */
+	public void add(double value) {
+		if(Double.isNaN(value)) {
+			return;
+		}
+		count++;
+		double delta = value-mean;
+		mean += delta/count;
+		squaredDeviations += delta*(value-mean);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Returns the sample standard deviation of the observations.
+	 */
+	public double getStandardDeviation() {
+		return count < 2 ? Double.NaN : Math.sqrt(squaredDeviations/(count-1));
+	}
+
+	/**
+	 * Returns the half-width of the 95% confidence interval of the mean,
+	 * or infinity if there are fewer than two observations.
+	 */
+	public double getHalfWidth() {
+		if(count < 2) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return tQuantile(count-1)*getStandardDeviation()/Math.sqrt(count);
+	}
+
+	/**
+	 * Returns the half-width of the 95% confidence interval relative to the
+	 * mean. A metric that is always zero has a relative half-width of zero.
+	 */
+	public double getRelativeHalfWidth() {
+		double halfWidth = getHalfWidth();
+		if(halfWidth == 0) {
+			return 0;
+		}
+		return halfWidth/Math.abs(mean);
+	}
+
+	/**
+	 * Returns the two-sided 95% quantile of Student's t distribution. Beyond 30
+	 * degrees of freedom the quantile is interpolated linearly in 1/df between
+	 * tabulated values, ending at the normal quantile 1.96.
+	 * @param degreesOfFreedom	The degrees of freedom, at least 1.
+	 */
+	static double tQuantile(long degreesOfFreedom) {
+		if(degreesOfFreedom <= T_QUANTILES.length) {
+			return T_QUANTILES[(int)degreesOfFreedom-1];
+		}
+		double[][] table = {{30, 2.042}, {40, 2.021}, {60, 2.000}, {120, 1.980}, {Double.POSITIVE_INFINITY, 1.960}};
+		double x = 1.0/degreesOfFreedom;
+		for(int i = 1; i < table.length; i++) {
+			if(degreesOfFreedom <= table[i][0]) {
+				double x0 = 1/table[i-1][0];
+				double x1 = 1/table[i][0];
+				return table[i-1][1] + (table[i][1]-table[i-1][1])*(x0-x)/(x0-x1);
+			}
+		}
+		return 1.960;
+	}
+}
@@ -0,0 +1,293 @@
+package round_robin;
+
+import round_robin.scheduling.SchedulingPolicy;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs the simulator for every combination of a grid of parameters, or for
+ * every parameter set listed in a file, and writes one row of results per
+ * configuration as comma separated values. The simulations are independent
+ * and run in parallel on a ForkJoinPool using all cores by default.
+ *
+ * Every configuration gets its own seed, drawn in order from the base seed,
+ * so a sweep is reproducible no matter how the runs are scheduled.
+ */
+public class ParameterSweep {
+    private static final String USAGE =
+            "Usage: java round_robin.ParameterSweep [options]\n" +
+            "  --memory <KB,...>        Memory sizes (default 2048)\n" +
+            "  --policy <name,...>      CPU scheduling policies: fcfs, rr, sjf, srt, mlfq, cfs (default rr)\n" +
+            "  --cores <n,...>          Numbers of CPU cores (default 1)\n" +
+            "  --balancing <mode,...>   Sharing of work between cores: global, none, idle, periodic (default global)\n" +
+            "  --balance-interval <ms>  Time between periodic balancing of the run queues (default 100)\n" +
+            "  --quantum <ms,...>       Maximum uninterrupted cpu times (default 500)\n" +
+            "  --io-time <ms,...>       Average I/O operation times (default 225)\n" +
+            "  --arrival <ms,...>       Average times between process arrivals (default 5000)\n" +
+            "  --length <ms,...>        Simulation lengths (default 250000)\n" +
+            "  --file <path>            Read parameter sets from a file instead of using a grid, one\n" +
+            "                           'memory,quantum,io-time,arrival,length[,seed]' line per set,\n" +
+            "                           each run with every policy, core count and load balancing\n" +
+            "  --seed <number>          Base seed of the random numbers (default random)\n" +
+            "  --queue heap|calendar    Event queue implementation (default heap)\n" +
+            "  --parallelism <threads>  Number of simulations run at once (default all cores)\n" +
+            "  --output <path>          The CSV file to write (default standard output)";
+
+    /** The columns describing a configuration, written before the statistics */
+    private static final String CONFIGURATION_HEADER = "policy,cores,balancing,memory,quantum,io_time,arrival,length,seed";
+
+    /**
+     * One set of simulation parameters.
+     */
+    static class Configuration {
+        final String policy;
+        final int nofCores;
+        final Cpu.LoadBalancing balancing;
+        final long balanceInterval;
+        final long memorySize;
+        final long maxCpuTime;
+        final long avgIoTime;
+        final long avgArrivalInterval;
+        final long simulationLength;
+        final long seed;
+
+        Configuration(String policy, int nofCores, Cpu.LoadBalancing balancing, long balanceInterval,
+                      long memorySize, long maxCpuTime, long avgIoTime, long avgArrivalInterval,
+                      long simulationLength, long seed) {
+            this.policy = policy;
+            this.nofCores = nofCores;
+            this.balancing = balancing;
+            this.balanceInterval = balanceInterval;
+            this.memorySize = memorySize;
+            this.maxCpuTime = maxCpuTime;
+            this.avgIoTime = avgIoTime;
+            this.avgArrivalInterval = avgArrivalInterval;
+            this.simulationLength = simulationLength;
+            this.seed = seed;
+        }
+
+        Simulator createSimulator(EventQueue eventQueue) {
+            return new Simulator(memorySize, () -> SchedulingPolicy.create(policy, maxCpuTime), nofCores, balancing,
+                    balanceInterval, avgIoTime, simulationLength, avgArrivalInterval, eventQueue, seed);
+        }
+
+        /**
+         * Returns a configuration with the CPU of this one and the given parameters.
+         */
+        Configuration withParameters(long memorySize, long maxCpuTime, long avgIoTime, long avgArrivalInterval,
+                                     long simulationLength, long seed) {
+            return new Configuration(policy, nofCores, balancing, balanceInterval, memorySize, maxCpuTime,
+                    avgIoTime, avgArrivalInterval, simulationLength, seed);
+        }
+
+        String toCsv() {
+            return policy+","+nofCores+","+balancing.getName()+","+memorySize+","+maxCpuTime+","+avgIoTime+","+avgArrivalInterval+","+simulationLength+","+seed;
+        }
+    }
+
+    public static void main(String args[]) {
+        long[] memorySizes = {2048};
+        String[] policies = {"rr"};
+        long[] coreCounts = {1};
+        String[] balancingNames = {"global"};
+        long balanceInterval = 100;
+        long[] maxCpuTimes = {500};
+        long[] avgIoTimes = {225};
+        long[] avgArrivalIntervals = {5000};
+        long[] simulationLengths = {250000};
+        String file = null;
+        long baseSeed = new SplittableRandom().nextLong();
+        String queue = "heap";
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        String output = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String flag = args[i];
+                if (flag.equals("--help") || flag.equals("-h")) {
+                    exitWithUsage(null);
+                }
+                if (i+1 == args.length) {
+                    exitWithUsage("Missing value for " + flag);
+                }
+                String value = args[++i];
+                switch (flag) {
+                    case "--memory": memorySizes = parseList(value); break;
+                    case "--policy": policies = value.split(","); break;
+                    case "--cores": coreCounts = parseList(value); break;
+                    case "--balancing": balancingNames = value.split(","); break;
+                    case "--balance-interval": balanceInterval = Long.parseLong(value); break;
+                    case "--quantum": maxCpuTimes = parseList(value); break;
+                    case "--io-time": avgIoTimes = parseList(value); break;
+                    case "--arrival": avgArrivalIntervals = parseList(value); break;
+                    case "--length": simulationLengths = parseList(value); break;
+                    case "--file": file = value; break;
+                    case "--seed": baseSeed = Long.parseLong(value); break;
+                    case "--queue": queue = value; break;
+                    case "--parallelism": parallelism = Integer.parseInt(value); break;
+                    case "--output": output = value; break;
+                    default: exitWithUsage("Unknown option " + flag);
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            exitWithUsage("Not a number: " + nfe.getMessage());
+        }
+        // Fail on an unknown queue name before starting any simulation
+        HeadlessApplication.createEventQueue(queue);
+        for (int i = 0; i < policies.length; i++) {
+            policies[i] = policies[i].trim();
+            HeadlessApplication.createPolicy(policies[i], 1);
+        }
+        Cpu.LoadBalancing[] balancings = new Cpu.LoadBalancing[balancingNames.length];
+        for (int i = 0; i < balancings.length; i++) {
+            balancings[i] = HeadlessApplication.createLoadBalancing(balancingNames[i].trim());
+        }
+        for (long nofCores : coreCounts) {
+            HeadlessApplication.checkCores((int)nofCores, balanceInterval);
+        }
+        List<Configuration> cpus = new ArrayList<>();
+        for (String policy : policies)
+            for (long nofCores : coreCounts)
+                for (Cpu.LoadBalancing balancing : balancings)
+                    cpus.add(new Configuration(policy, (int)nofCores, balancing, balanceInterval, 0, 0, 0, 0, 0, 0));
+        if (parallelism < 1) {
+            exitWithUsage("Parallelism must be at least 1.");
+        }
+
+        SplittableRandom seeds = new SplittableRandom(baseSeed);
+        List<Configuration> configurations = new ArrayList<>();
+        if (file != null) {
+            try {
+                configurations = readConfigurations(file, cpus, seeds);
+            } catch (IOException | RuntimeException e) {
+                exitWithUsage("Could not read " + file + ": " + e.getMessage());
+            }
+        } else {
+            // All CPUs get the same seed, so they are compared on the same processes
+            for (long memorySize : memorySizes)
+                for (long maxCpuTime : maxCpuTimes)
+                    for (long avgIoTime : avgIoTimes)
+                        for (long avgArrivalInterval : avgArrivalIntervals)
+                            for (long simulationLength : simulationLengths) {
+                                long seed = seeds.nextLong();
+                                for (Configuration cpu : cpus)
+                                    configurations.add(cpu.withParameters(memorySize, maxCpuTime, avgIoTime,
+                                            avgArrivalInterval, simulationLength, seed));
+                            }
+        }
+        for (Configuration c : configurations) {
+            if (c.memorySize < 400 || c.simulationLength < 1) {
+                exitWithUsage("Memory size must be at least 400 KB and simulation length at least 1 ms: " + c.toCsv());
+            }
+        }
+
+        PrintStream out = System.out;
+        try {
+            if (output != null) {
+                out = new PrintStream(new FileOutputStream(output));
+            }
+        } catch (IOException ioe) {
+            exitWithUsage("Could not write " + output + ": " + ioe.getMessage());
+        }
+
+        long start = System.nanoTime();
+        sweep(configurations, queue, parallelism, out);
+        long elapsed = System.nanoTime() - start;
+        if (out != System.out) {
+            out.close();
+        }
+        System.err.println("Ran " + configurations.size() + " configurations in " + elapsed/1000000 +
+                " ms using " + parallelism + " threads.");
+    }
+
+    /**
+     * Runs all the configurations in parallel, and writes a header and then one row
+     * per configuration, in the order the configurations are given.
+     * @param configurations	The configurations to simulate.
+     * @param queue				The name of the event queue implementation to use.
+     * @param parallelism		The number of simulations to run at once.
+     * @param out				The stream to write the rows to.
+     */
+    static void sweep(List<Configuration> configurations, String queue, int parallelism, PrintStream out) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<String>> rows = new ArrayList<>();
+            for (Configuration c : configurations) {
+                rows.add(pool.submit(() -> simulate(c, queue)));
+            }
+            out.println(CONFIGURATION_HEADER + "," + Statistics.CSV_HEADER + ",events,wall_clock_ms");
+            for (ForkJoinTask<String> row : rows) {
+                out.println(row.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs one configuration and returns its row of results.
+     */
+    private static String simulate(Configuration c, String queue) {
+        Simulator simulator = c.createSimulator(HeadlessApplication.createEventQueue(queue));
+        long start = System.nanoTime();
+        Statistics statistics = simulator.run();
+        long elapsed = System.nanoTime() - start;
+        return c.toCsv() + "," + statistics.toCsvRow(c.simulationLength) + "," +
+                simulator.getNofHandledEvents() + "," + elapsed/1000000;
+    }
+
+    /**
+     * Reads parameter sets from a file. Empty lines and lines starting with '#'
+     * are skipped. Sets without a seed are given the next seed from seeds. Every
+     * set is run on each of the CPUs, using the same seed, so the CPUs see the
+     * same processes.
+     */
+    private static List<Configuration> readConfigurations(String file, List<Configuration> cpus,
+                                                          SplittableRandom seeds) throws IOException {
+        List<Configuration> configurations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                long[] values = parseList(line);
+                if (values.length < 5 || values.length > 6) {
+                    throw new IllegalArgumentException("expected 5 or 6 values in '" + line + "'");
+                }
+                long seed = values.length == 6 ? values[5] : seeds.nextLong();
+                for (Configuration cpu : cpus) {
+                    configurations.add(cpu.withParameters(values[0], values[1], values[2], values[3], values[4], seed));
+                }
+            }
+        }
+        return configurations;
+    }
+
+    private static long[] parseList(String value) {
+        String[] parts = value.split(",");
+        long[] result = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Long.parseLong(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static void exitWithUsage(String message) {
+        if (message != null) {
+            System.out.println(message);
+        }
+        System.out.println(USAGE);
+        System.exit(message == null ? 0 : 1);
+    }
+}
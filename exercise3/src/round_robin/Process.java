@@ -1,6 +1,6 @@
 package round_robin;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * This class contains data associated with processes,
@@ -10,8 +10,6 @@ import java.util.Random;
  * You will probably want to add more methods to this class.
  */
 public class Process {
-	/** The ID of the next process to be created */
-	private static long nextProcessId = 1;
 	/** The ID of this process */
 	private long processId;
 	/** The amount of memory needed by this process */
@@ -39,26 +37,41 @@ public class Process {
 	/** The number of times that this process has been placed in the I/O queue */
 	private long nofTimesInIoQueue = 0;
 
+	/** The priority level of this process, used by scheduling policies with several levels */
+	private int schedulingLevel = 0;
+	/** The CPU time used by this process as counted by fair scheduling policies */
+	private long virtualRuntime = 0;
+
+	/** The CPU core this process last ran on, or -1 if it has not run yet */
+	private int lastCore = -1;
+
 	/** The global time of the last event involving this process */
 	private long timeOfLastEvent;
 
+	/** The random number stream used to draw the time to the next I/O operation */
+	private final SplittableRandom ioIntervalRandom;
+
 	/**
 	 * Creates a new process with given parameters. Other parameters are randomly
 	 * determined.
-	 * @param memorySize	The size of the memory unit.
-	 * @param creationTime	The global time when this process is created.
+	 * @param processId			The ID of this process, unique within its simulation.
+	 * @param memorySize		The size of the memory unit.
+	 * @param creationTime		The global time when this process is created.
+	 * @param demandRandom		The random number stream used to draw the memory and CPU needs.
+	 * @param ioIntervalRandom	The random number stream used to draw the times between I/O operations.
 	 */
-	public Process(long memorySize, long creationTime) {
+	public Process(long processId, long memorySize, long creationTime, SplittableRandom demandRandom,
+				   SplittableRandom ioIntervalRandom) {
+		this.processId = processId;
+		this.ioIntervalRandom = ioIntervalRandom;
 		// Memory need varies from 100 kB to 25% of memory size
-		memoryNeeded = 100 + (long)(Math.random()*(memorySize/4-100));
+		memoryNeeded = 100 + (long)(demandRandom.nextDouble()*(memorySize/4-100));
 		// CPU time needed varies from 100 to 10000 milliseconds
-		cpuTimeNeeded = 100 + (long)(Math.random()*9900);
+		cpuTimeNeeded = 100 + (long)(demandRandom.nextDouble()*9900);
 		// Average interval between I/O requests varies from 1% to 25% of CPU time needed
-		avgIoInterval = (1 + (long)(Math.random()*25))*cpuTimeNeeded/100;
+		avgIoInterval = (1 + (long)(demandRandom.nextDouble()*25))*cpuTimeNeeded/100;
 		// The first and latest event involving this process is its creation
 		timeOfLastEvent = creationTime;
-		// Assign a process ID
-		processId = nextProcessId++;
 
 		timeToNextIoOperation = getTimeToNextIoOperation();
 	}
@@ -140,10 +153,9 @@ public class Process {
 		if(timeToNextIoOperation <= 0){
 			// generate new value for each time the process is in the cpu
 			// The time to next io is random within certain limits of the io interval
-			Random random = new Random();
 			int max = (int) (1.2*avgIoInterval);
 			int min = (int) (0.8*avgIoInterval);
-			timeToNextIoOperation = (long) random.nextInt(max+1-min)+min;
+			timeToNextIoOperation = (long) ioIntervalRandom.nextInt(max+1-min)+min;
 		}
 		return timeToNextIoOperation;
 	}
@@ -156,6 +168,30 @@ public class Process {
 		}
 	}
 
+	public int getLastCore() {
+		return lastCore;
+	}
+
+	public void setLastCore(int lastCore) {
+		this.lastCore = lastCore;
+	}
+
+	public int getSchedulingLevel() {
+		return schedulingLevel;
+	}
+
+	public void setSchedulingLevel(int schedulingLevel) {
+		this.schedulingLevel = schedulingLevel;
+	}
+
+	public long getVirtualRuntime() {
+		return virtualRuntime;
+	}
+
+	public void setVirtualRuntime(long virtualRuntime) {
+		this.virtualRuntime = virtualRuntime;
+	}
+
 	public void setCpuTimeNeeded(long time){
 		if(time < 0){
 			cpuTimeNeeded = 0;
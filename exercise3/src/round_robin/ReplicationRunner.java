@@ -0,0 +1,210 @@
+package round_robin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs independent, differently seeded replications of one configuration
+ * in parallel, and reports the mean and a 95% confidence interval for the
+ * main metrics instead of the point estimates of a single run.
+ *
+ * If a target is given, more replications are added, one batch of
+ * "parallelism" runs at a time, until the half-width of every interval
+ * is below the target fraction of its mean (or the maximum number of
+ * replications has been run).
+ */
+public class ReplicationRunner {
+    private static final String USAGE =
+            "Usage: java round_robin.ReplicationRunner [options]\n" +
+            "  --memory <KB>              Memory size (default 2048)\n" +
+            "  --quantum <ms>             Maximum uninterrupted cpu time for a process (default 500)\n" +
+            "  --io-time <ms>             Average I/O operation time (default 225)\n" +
+            "  --length <ms>              Simulation length (default 250000)\n" +
+            "  --arrival <ms>             Average time between process arrivals (default 5000)\n" +
+            "  --policy <name>            CPU scheduling policy: fcfs, rr, sjf, srt, mlfq or cfs (default rr)\n" +
+            "  --cores <n>                Number of CPU cores (default 1)\n" +
+            "  --balancing <mode>         Sharing of work between cores: global, none, idle or periodic (default global)\n" +
+            "  --balance-interval <ms>    Time between periodic balancing of the run queues (default 100)\n" +
+            "  --queue heap|calendar      Event queue implementation (default heap)\n" +
+            "  --seed <number>            Base seed of the random numbers (default random)\n" +
+            "  --replications <n>         Number of replications to start with (default 10)\n" +
+            "  --target <fraction>        Add replications until every relative half-width is below this\n" +
+            "  --max-replications <n>     Largest number of replications when a target is given (default 1000)\n" +
+            "  --parallelism <threads>    Number of replications run at once (default all cores)";
+
+    /** The names of the metrics summarized, in the order returned by observe */
+    private static final String[] METRICS = {
+            "Throughput (processes per second)",
+            "Average time spent in system (ms)",
+            "CPU utilization",
+            "Average memory queue length",
+            "Average cpu queue length",
+            "Average I/O queue length"
+    };
+
+    public static void main(String args[]) {
+        long memorySize = 2048;
+        long maxCpuTime = 500;
+        long avgIoTime = 225;
+        long simulationLength = 250000;
+        long avgArrivalInterval = 5000;
+        String policy = "rr";
+        int nofCores = 1;
+        String balancing = "global";
+        long balanceInterval = 100;
+        String queue = "heap";
+        long baseSeed = new SplittableRandom().nextLong();
+        int replications = 10;
+        double target = 0;
+        int maxReplications = 1000;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String flag = args[i];
+                if (flag.equals("--help") || flag.equals("-h")) {
+                    exitWithUsage(null);
+                }
+                if (i+1 == args.length) {
+                    exitWithUsage("Missing value for " + flag);
+                }
+                String value = args[++i];
+                switch (flag) {
+                    case "--memory": memorySize = Long.parseLong(value); break;
+                    case "--quantum": maxCpuTime = Long.parseLong(value); break;
+                    case "--io-time": avgIoTime = Long.parseLong(value); break;
+                    case "--length": simulationLength = Long.parseLong(value); break;
+                    case "--arrival": avgArrivalInterval = Long.parseLong(value); break;
+                    case "--policy": policy = value; break;
+                    case "--cores": nofCores = Integer.parseInt(value); break;
+                    case "--balancing": balancing = value; break;
+                    case "--balance-interval": balanceInterval = Long.parseLong(value); break;
+                    case "--queue": queue = value; break;
+                    case "--seed": baseSeed = Long.parseLong(value); break;
+                    case "--replications": replications = Integer.parseInt(value); break;
+                    case "--target": target = Double.parseDouble(value); break;
+                    case "--max-replications": maxReplications = Integer.parseInt(value); break;
+                    case "--parallelism": parallelism = Integer.parseInt(value); break;
+                    default: exitWithUsage("Unknown option " + flag);
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            exitWithUsage("Not a number: " + nfe.getMessage());
+        }
+        HeadlessApplication.createEventQueue(queue);
+        HeadlessApplication.createPolicy(policy, maxCpuTime);
+        Cpu.LoadBalancing loadBalancing = HeadlessApplication.createLoadBalancing(balancing);
+        HeadlessApplication.checkCores(nofCores, balanceInterval);
+        if (memorySize < 400) {
+            exitWithUsage("Memory size must be at least 400 KB.");
+        }
+        if (simulationLength < 1) {
+            exitWithUsage("Simulation length must be at least 1 ms.");
+        }
+        if (replications < 2 || parallelism < 1 || maxReplications < replications) {
+            exitWithUsage("Use at least 2 replications, at least 1 thread, and no fewer maximum than initial replications.");
+        }
+
+        System.out.println("Base seed: " + baseSeed);
+        SplittableRandom seeds = new SplittableRandom(baseSeed);
+        MetricSummary[] summaries = new MetricSummary[METRICS.length];
+        for (int m = 0; m < METRICS.length; m++) {
+            summaries[m] = new MetricSummary(METRICS[m]);
+        }
+        Statistics pooled = new Statistics();
+        int done = 0;
+        int batch = replications;
+
+        String eventQueue = queue;
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            while (true) {
+                List<ForkJoinTask<Statistics>> runs = new ArrayList<>();
+                for (int r = 0; r < batch; r++) {
+                    ParameterSweep.Configuration c = new ParameterSweep.Configuration(policy, nofCores,
+                            loadBalancing, balanceInterval, memorySize, maxCpuTime, avgIoTime, avgArrivalInterval,
+                            simulationLength, seeds.nextLong());
+                    runs.add(pool.submit(() -> c.createSimulator(HeadlessApplication.createEventQueue(eventQueue)).run()));
+                }
+                // Fold the results in submission order, so the summaries do not depend on scheduling
+                for (ForkJoinTask<Statistics> run : runs) {
+                    Statistics statistics = run.join();
+                    double[] values = observe(statistics, simulationLength);
+                    for (int m = 0; m < values.length; m++) {
+                        summaries[m].add(values[m]);
+                    }
+                    pooled.add(statistics);
+                    done++;
+                }
+                if (target <= 0 || isPrecise(summaries, target) || done >= maxReplications) {
+                    break;
+                }
+                batch = Math.min(parallelism, maxReplications - done);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        printSummaries(summaries, done, target);
+        System.out.println();
+        System.out.println("Pooled statistics over all replications ("+done+" x "+simulationLength+" ms):");
+        pooled.printReport(done*simulationLength);
+        System.out.println();
+        System.out.println("Wall-clock time:                                              "+elapsed/1000000+" ms");
+    }
+
+    /**
+     * Returns the values of the summarized metrics for one replication.
+     */
+    static double[] observe(Statistics statistics, long simulationLength) {
+        return new double[] {
+                statistics.getThroughput(simulationLength),
+                statistics.getAverageTimeInSystem(),
+                statistics.getCpuUtilization(simulationLength),
+                statistics.getAverageMemoryQueueLength(simulationLength),
+                statistics.getAverageCpuQueueLength(simulationLength),
+                statistics.getAverageIoQueueLength(simulationLength)
+        };
+    }
+
+    /**
+     * Checks if the relative half-width of every confidence interval is below the target.
+     */
+    static boolean isPrecise(MetricSummary[] summaries, double target) {
+        for (MetricSummary summary : summaries) {
+            if (!(summary.getRelativeHalfWidth() < target)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void printSummaries(MetricSummary[] summaries, int replications, double target) {
+        System.out.println();
+        System.out.println("Results of "+replications+" replications (mean, 95% confidence interval):");
+        if (target > 0) {
+            System.out.println("Target relative half-width "+target+(isPrecise(summaries, target) ? " reached." : " NOT reached."));
+        }
+        System.out.println();
+        for (MetricSummary summary : summaries) {
+            double mean = summary.getMean();
+            double halfWidth = summary.getHalfWidth();
+            System.out.println(String.format("%-36s %14.4f +- %-12.4f [%.4f, %.4f]  relative half-width %.2f%%  (n=%d)",
+                    summary.getName()+":", mean, halfWidth, mean-halfWidth, mean+halfWidth,
+                    100*summary.getRelativeHalfWidth(), summary.getCount()));
+        }
+    }
+
+    private static void exitWithUsage(String message) {
+        if (message != null) {
+            System.out.println(message);
+        }
+        System.out.println(USAGE);
+        System.exit(message == null ? 0 : 1);
+    }
+}
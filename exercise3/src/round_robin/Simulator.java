@@ -1,8 +1,14 @@
 package round_robin;
 
+import round_robin.scheduling.RoundRobinPolicy;
+import round_robin.scheduling.SchedulingPolicy;
+
 import java.lang.*;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.SplittableRandom;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * The main class of the P3 exercise. This class is only partially complete.
@@ -10,12 +16,11 @@ import java.util.function.Consumer;
 public class Simulator
 {
 	/** Process queues */
-	private LinkedList<Process> memoryQueue = new LinkedList<>();
-	private LinkedList<Process> cpuQueue = new LinkedList<>();
-	private LinkedList<Process> ioQueue = new LinkedList<>();
+	private ArrayDeque<Process> memoryQueue = new ArrayDeque<>();
+	private ArrayDeque<Process> ioQueue = new ArrayDeque<>();
 
 	/** The queue of events to come */
-    private EventQueue eventQueue = new EventQueue();
+    private EventQueue eventQueue;
 
 	/** Reference to the statistics collector */
 	private Statistics statistics = new Statistics();
@@ -36,7 +41,21 @@ public class Simulator
 	private long simulationLength;
 	/** The average length between process arrivals */
 	private long avgArrivalInterval;
-	// Add member variables as needed
+	/** The time between periodic balancing of the run queues, 0 if they are not balanced periodically */
+	private long balanceInterval;
+	/** The number of events taken from the event queue */
+	private long nofHandledEvents;
+	/** The ID of the next process to be created */
+	private long nextProcessId = 1;
+
+	/** The seed of all random numbers drawn by this simulator */
+	private long seed;
+	/** The random number stream used to draw the times between process arrivals */
+	private SplittableRandom arrivalRandom;
+	/** The random number stream used to draw the memory and CPU needs of new processes */
+	private SplittableRandom cpuDemandRandom;
+	/** The random number stream used to draw the times between the I/O operations of a process */
+	private SplittableRandom ioIntervalRandom;
 
 	/**
 	 * Constructs a scheduling simulator with the given parameters.
@@ -47,37 +66,139 @@ public class Simulator
 	 * @param avgArrivalInterval	The average time between process arrivals.
 	 */
 	public Simulator(long memorySize, long maxCpuTime, long avgIoTime, long simulationLength, long avgArrivalInterval) {
+		this(memorySize, maxCpuTime, avgIoTime, simulationLength, avgArrivalInterval, new HeapEventQueue());
+	}
+
+	/**
+	 * Constructs a scheduling simulator with the given parameters, using
+	 * the given queue to hold the events to come.
+	 * @param memorySize			The size of the memory.
+	 * @param maxCpuTime			The maximum time quant used by the RR algorithm.
+	 * @param avgIoTime				The average length of an I/O operation.
+	 * @param simulationLength		The length of the simulation.
+	 * @param avgArrivalInterval	The average time between process arrivals.
+	 * @param eventQueue			The (empty) event queue to be used.
+	 */
+	public Simulator(long memorySize, long maxCpuTime, long avgIoTime, long simulationLength, long avgArrivalInterval,
+					 EventQueue eventQueue) {
+		this(memorySize, maxCpuTime, avgIoTime, simulationLength, avgArrivalInterval, eventQueue,
+				new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Constructs a scheduling simulator with the given parameters. All random
+	 * numbers are drawn from streams split from the given seed, one stream for
+	 * each kind of number, so the same seed always gives the same simulation.
+	 * @param memorySize			The size of the memory.
+	 * @param maxCpuTime			The maximum time quant used by the RR algorithm.
+	 * @param avgIoTime				The average length of an I/O operation.
+	 * @param simulationLength		The length of the simulation.
+	 * @param avgArrivalInterval	The average time between process arrivals.
+	 * @param eventQueue			The (empty) event queue to be used.
+	 * @param seed					The seed of the random numbers.
+	 */
+	public Simulator(long memorySize, long maxCpuTime, long avgIoTime, long simulationLength, long avgArrivalInterval,
+					 EventQueue eventQueue, long seed) {
+		this(memorySize, new RoundRobinPolicy(maxCpuTime), avgIoTime, simulationLength, avgArrivalInterval, eventQueue, seed);
+	}
+
+	/**
+	 * Constructs a scheduling simulator using the given CPU scheduling policy.
+	 * All random numbers are drawn from streams split from the given seed, so the
+	 * same seed gives the same arrivals and process demands with every policy.
+	 * @param memorySize			The size of the memory.
+	 * @param policy				The (empty) scheduling policy deciding which process uses the CPU.
+	 * @param avgIoTime				The average length of an I/O operation.
+	 * @param simulationLength		The length of the simulation.
+	 * @param avgArrivalInterval	The average time between process arrivals.
+	 * @param eventQueue			The (empty) event queue to be used.
+	 * @param seed					The seed of the random numbers.
+	 */
+	public Simulator(long memorySize, SchedulingPolicy policy, long avgIoTime, long simulationLength,
+					 long avgArrivalInterval, EventQueue eventQueue, long seed) {
+		this(memorySize, () -> policy, 1, Cpu.LoadBalancing.GLOBAL, 0, avgIoTime, simulationLength, avgArrivalInterval,
+				eventQueue, seed);
+	}
+
+	/**
+	 * Constructs a scheduling simulator with a CPU of several cores.
+	 * All random numbers are drawn from streams split from the given seed, so the
+	 * same seed gives the same arrivals and process demands with every CPU.
+	 * @param memorySize			The size of the memory.
+	 * @param policies				Creates the (empty) scheduling policies holding the run queues.
+	 * @param nofCores				The number of CPU cores.
+	 * @param balancing				How the cores share their work.
+	 * @param balanceInterval		The time between balancing of the run queues, used with periodic load balancing.
+	 * @param avgIoTime				The average length of an I/O operation.
+	 * @param simulationLength		The length of the simulation.
+	 * @param avgArrivalInterval	The average time between process arrivals.
+	 * @param eventQueue			The (empty) event queue to be used.
+	 * @param seed					The seed of the random numbers.
+	 */
+	public Simulator(long memorySize, Supplier<SchedulingPolicy> policies, int nofCores, Cpu.LoadBalancing balancing,
+					 long balanceInterval, long avgIoTime, long simulationLength, long avgArrivalInterval,
+					 EventQueue eventQueue, long seed) {
+		this.balanceInterval = balancing == Cpu.LoadBalancing.PERIODIC ? balanceInterval : 0;
+		this.eventQueue = eventQueue;
 		this.simulationLength = simulationLength;
 		this.avgArrivalInterval = avgArrivalInterval;
 		this.statistics = new Statistics();
+		this.seed = seed;
+		SplittableRandom random = new SplittableRandom(seed);
+		arrivalRandom = random.split();
+		cpuDemandRandom = random.split();
+		ioIntervalRandom = random.split();
+		SplittableRandom ioDurationRandom = random.split();
 		memory = new Memory(memoryQueue, memorySize, statistics);
-		cpu = new Cpu(cpuQueue, maxCpuTime, statistics);
-		io = new Io(ioQueue, avgIoTime, statistics);
+		cpu = new Cpu(nofCores, balancing, policies, statistics, eventQueue);
+		// Every core's policy comes from the same supplier, so core 0 names them all
+		statistics.schedulingPolicy = cpu.getRunQueue(0).getName();
+		io = new Io(ioQueue, avgIoTime, statistics, eventQueue, ioDurationRandom);
 
-		memoryQueue.add(new Process(memorySize, avgIoTime));
+		memoryQueue.add(new Process(nextProcessId++, memorySize, avgIoTime, cpuDemandRandom, ioIntervalRandom));
 		statistics.nofCreatedProcesses++;
 		clock = 0;
 
     }
 
 	/**
-	 * Starts the simulation. Contains the main loop, processing events.
+	 * Starts the simulation, and prints the statistics report when it is done.
 	 * This method is called when the "Start simulation" button in the
 	 * GUI is clicked.
 	 */
 	public void simulate() {
 
 		System.out.print("Simulating...");
+		run();
+		System.out.println("..done.");
+		// End the simulation by printing out the required statistics
+		statistics.printReport(simulationLength);
+	}
+
+	/**
+	 * Runs the simulation to its end without printing anything. Contains the
+	 * main loop, processing events. Simulators
+	 * share no state, so different simulators may run in parallel threads.
+	 * @return	The statistics collected during the simulation.
+	 */
+	public Statistics run() {
 		// Genererate the first process arrival event
-		eventQueue.insertEvent(new Event(Event.NEW_PROCESS, 0));
+		eventQueue.schedule(Event.NEW_PROCESS, 0, Event.NO_PROCESS);
+		if (balanceInterval > 0) {
+			eventQueue.schedule(Event.BALANCE_LOAD, balanceInterval, Event.NO_PROCESS);
+		}
 		// Process events until the simulation length is exceeded:
 		while (clock < simulationLength && !eventQueue.isEmpty()) {
-			// Find the next event
-			Event event = eventQueue.getNextEvent();
+			// Find the next event, without creating an Event object
+			long eventTime = eventQueue.peekTime();
+			int eventType = eventQueue.peekType();
+			int eventProcess = eventQueue.peekProcess();
+			eventQueue.removeNext();
+			nofHandledEvents++;
 			// Find out how much time that passed...
-			long timeDifference = event.getTime()-clock;
+			long timeDifference = eventTime-clock;
 			// ...and update the clock.
-			clock = event.getTime();
+			clock = eventTime;
 
 			/* Let the GUI know that time passed. */
 			Consumer<Long> cb = onTimeStep;
@@ -90,7 +211,7 @@ public class Simulator
 
 			// Deal with the event
 			if (clock < simulationLength) {
-				processEvent(event);
+				processEvent(eventType, eventProcess);
 			}
 
 			// Let the GUI know we handled an event.
@@ -101,29 +222,40 @@ public class Simulator
 			// events being added to the event queue!
 
 		}
-		System.out.println("..done.");
-		// End the simulation by printing out the required statistics
-		statistics.printReport(simulationLength);
+		return statistics;
 	}
 
 	/**
 	 * Processes an event by inspecting its type and delegating
 	 * the work to the appropriate method.
-	 * @param event	The event to be processed.
+	 * CPU events left behind by a preempted process are ignored.
+	 * @param eventType		The type of the event to be processed.
+	 * @param eventProcess	The ID of the process involved in the event.
 	 */
-	private void processEvent(Event event) {
-		switch (event.getType()) {
+	private void processEvent(int eventType, int eventProcess) {
+		int core = 0;
+		if(eventType == Event.SWITCH_PROCESS || eventType == Event.END_PROCESS || eventType == Event.IO_REQUEST) {
+			core = cpu.findCore(eventType, clock, eventProcess);
+			if(core < 0) {
+				return;
+			}
+		}
+		switch (eventType) {
 			case Event.NEW_PROCESS:
 				createProcess();
 				break;
 			case Event.SWITCH_PROCESS:
-				switchProcess();
+				switchProcess(core);
 				break;
 			case Event.END_PROCESS:
-				endProcess();
+				endProcess(core);
 				break;
 			case Event.IO_REQUEST:
-				processIoRequest();
+				processIoRequest(core);
+				break;
+			case Event.BALANCE_LOAD:
+				cpu.balance(clock);
+				eventQueue.schedule(Event.BALANCE_LOAD, clock + balanceInterval, Event.NO_PROCESS);
 				break;
 			case Event.END_IO:
 				endIoOperation();
@@ -136,12 +268,12 @@ public class Simulator
 	 */
 	private void createProcess() {
 		// Create a new process
-		Process newProcess = new Process(memory.getMemorySize(), clock);
+		Process newProcess = new Process(nextProcessId++, memory.getMemorySize(), clock, cpuDemandRandom, ioIntervalRandom);
 		memory.insertProcess(newProcess);
 		transferProcessFromMemToReady();
 		// Add an event for the next process arrival
-		long nextArrivalTime = clock + 1 + (long)(2*Math.random()*avgArrivalInterval);
-		eventQueue.insertEvent(new Event(Event.NEW_PROCESS, nextArrivalTime));
+		long nextArrivalTime = clock + 1 + (long)(2*arrivalRandom.nextDouble()*avgArrivalInterval);
+		eventQueue.schedule(Event.NEW_PROCESS, nextArrivalTime, Event.NO_PROCESS);
 		// Update statistics
 		statistics.nofCreatedProcesses++;
     }
@@ -155,8 +287,7 @@ public class Simulator
 		// As long as there is enough memory, processes are moved from the memory queue to the cpu queue
 		while(p != null) {
 			p.leftMemoryQueue(clock);
-			Event event = cpu.insertProcess(p, clock);
-			eventQueue.insertEvent(event);
+			cpu.insertProcess(p, clock);
 			// Check for more free memory
 			p =	 memory.checkMemory(clock);
 
@@ -165,24 +296,20 @@ public class Simulator
 
 	/**
 	 * Simulates a process switch.
+	 * @param core	The index of the core whose process used its time slice.
 	 */
-	private void switchProcess() {
-		Process p = cpu.getActiveProcess();
-		eventQueue.insertEvent(cpu.activeProcessLeft(clock));
-		if(p != null){
-			eventQueue.insertEvent(cpu.insertProcess(p, clock));
-		}
-
+	private void switchProcess(int core) {
+		cpu.timeSliceExpired(core, clock);
 		statistics.nofProcessSwitches++;
 	}
 
 	/**
-	 * Ends the active process, and deallocates any resources allocated to it.
+	 * Ends the active process of a core, and deallocates any resources allocated to it.
+	 * @param core	The index of the core.
 	 */
-	private void endProcess() {
-		Process p = cpu.getActiveProcess();
-		Event event = cpu.activeProcessLeft(clock);
-		eventQueue.insertEvent(event);
+	private void endProcess(int core) {
+		Process p = cpu.getActiveProcess(core);
+		cpu.activeProcessLeft(core, clock);
 		memory.processCompleted(p);
 		statistics.nofCompletedProcesses++;
 		p.updateStatistics(statistics);
@@ -191,13 +318,12 @@ public class Simulator
 	/**
 	 * Processes an event signifying that the active process needs to
 	 * perform an I/O operation.
+	 * @param core	The index of the core.
 	 */
-	private void processIoRequest() {
-		Process active_process = cpu.getActiveProcess();
-		Event event = cpu.activeProcessLeft(clock);
-		eventQueue.insertEvent(event);
-		event = io.addIoRequest(active_process, clock);
-		eventQueue.insertEvent(event);
+	private void processIoRequest(int core) {
+		Process active_process = cpu.getActiveProcess(core);
+		cpu.activeProcessLeft(core, clock);
+		io.addIoRequest(active_process, clock);
 	}
 
 	/**
@@ -206,8 +332,8 @@ public class Simulator
 	 */
 	private void endIoOperation() {
 		Process p = io.removeActiveProcess(clock);
-		eventQueue.insertEvent(cpu.insertProcess(p, clock));
-		eventQueue.insertEvent(io.startIoOperation(clock));
+		cpu.insertProcess(p, clock);
+		io.startIoOperation(clock);
 		p.timeSpentInIO(clock);
 		statistics.nofProcessedIoOperations++;
 	}
@@ -215,18 +341,42 @@ public class Simulator
 
 	/* The following methods are used by the GUI and should not be removed or modified. */
 
-	public LinkedList<Process> getMemoryQueue() {
+	public Queue<Process> getMemoryQueue() {
 		return memoryQueue;
 	}
 
-	public LinkedList<Process> getCpuQueue() {
-		return cpuQueue;
+	public Queue<Process> getCpuQueue() {
+		return cpu.getRunQueues();
 	}
 
-	public LinkedList<Process> getIoQueue() {
+	public Queue<Process> getIoQueue() {
 		return ioQueue;
 	}
 
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	public long getSimulationLength() {
+		return simulationLength;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public long getNofHandledEvents() {
+		return nofHandledEvents;
+	}
+
+	public SchedulingPolicy getSchedulingPolicy() {
+		return cpu.getRunQueue(0);
+	}
+
+	public EventQueue getEventQueue() {
+		return eventQueue;
+	}
+
 	public Memory getMemory() {
 		return memory;
 	}
@@ -1,5 +1,7 @@
 package round_robin;
 
+import java.util.Arrays;
+
 /**
  * This class contains a lot of public variables that can be updated
  * by other classes during a simulation, to collect information about
@@ -7,12 +9,19 @@ package round_robin;
  */
 public class Statistics
 {
+	/** The name of the CPU scheduling policy used */
+	public String schedulingPolicy = null;
+	/** The name of the load balancing between the CPU cores */
+	public String loadBalancing = null;
+	/** The number of CPU cores */
+	public int nofCores = 1;
+
 	/** The number of processes that have exited the system */
 	public long nofCompletedProcesses = 0;
 	/** The number of processes that have entered the system */
 	public long nofCreatedProcesses = 0;
 
-	/** The total time that the CPU has been busy (processing) */
+	/** The total time that the CPU cores have been busy (processing), summed over the cores */
 	public long totalBusyCpuTime = 0;
 	/** The total time that all completed processes have spent waiting for memory */
 	public long totalTimeSpentWaitingForMemory = 0;
@@ -43,12 +52,173 @@ public class Statistics
 	/** The largest I/O queue length that has occured */
 	public long ioQueueLargestLength = 0;
 
-	/** The number of process switches due to a Round Robin time quant having been spent
+	/** The number of process switches due to a time slice having been spent
 	 (process switches due to a need for I/O or the completion of a process are not counted) */
 	public long nofProcessSwitches = 0;
+	/** The number of times that a process entering the CPU queue preempted the active process */
+	public long nofPreemptions = 0;
+	/** The number of times that a process was switched in on another core than it last ran on */
+	public long nofMigrations = 0;
+	/** The number of processes taken from the run queue of another core by an idle core */
+	public long nofSteals = 0;
+	/** The number of processes moved between run queues by periodic load balancing */
+	public long nofBalancingMoves = 0;
 	/** The total number of I/O operations that have been performed */
 	public long nofProcessedIoOperations = 0;
+
+	/** The time that each CPU core has been busy */
+	public long[] coreBusyTime = new long[1];
+	/** The time-weighted length of the run queue of each core, when the cores have their own run queues */
+	public long[] coreQueueLengthTime = new long[1];
+	/** The largest length of the run queue of each core, when the cores have their own run queues */
+	public long[] coreQueueLargestLength = new long[1];
+
+	/**
+	 * Sets the number of CPU cores, and makes room for the statistics of each core.
+	 * Statistics already collected for the cores are kept.
+	 * @param nofCores	The number of cores.
+	 */
+	public void setNofCores(int nofCores) {
+		this.nofCores = nofCores;
+		coreBusyTime = Arrays.copyOf(coreBusyTime, nofCores);
+		coreQueueLengthTime = Arrays.copyOf(coreQueueLengthTime, nofCores);
+		coreQueueLargestLength = Arrays.copyOf(coreQueueLargestLength, nofCores);
+	}
     
+	/**
+	 * Adds all data collected by another Statistics object to this one. Counters
+	 * and times are summed, and the largest queue lengths are the largest of the two.
+	 * After merging the statistics of several runs, the report of the combined
+	 * statistics should be given the sum of the simulation lengths. The scheduling
+	 * policy and load balancing are kept if both used the same ones, and the
+	 * statistics of core i are added to those of core i.
+	 * @param other	The statistics to add to this object.
+	 */
+	public void add(Statistics other) {
+		if(nofCreatedProcesses == 0) {
+			schedulingPolicy = other.schedulingPolicy;
+			loadBalancing = other.loadBalancing;
+		}
+		if(schedulingPolicy != null && !schedulingPolicy.equals(other.schedulingPolicy)) {
+			schedulingPolicy = null;
+		}
+		if(loadBalancing != null && !loadBalancing.equals(other.loadBalancing)) {
+			loadBalancing = null;
+		}
+		if(other.nofCores > nofCores) {
+			setNofCores(other.nofCores);
+		}
+		for(int i = 0; i < other.nofCores; i++) {
+			coreBusyTime[i] += other.coreBusyTime[i];
+			coreQueueLengthTime[i] += other.coreQueueLengthTime[i];
+			coreQueueLargestLength[i] = Math.max(coreQueueLargestLength[i], other.coreQueueLargestLength[i]);
+		}
+		nofCompletedProcesses += other.nofCompletedProcesses;
+		nofCreatedProcesses += other.nofCreatedProcesses;
+		totalBusyCpuTime += other.totalBusyCpuTime;
+		totalTimeSpentWaitingForMemory += other.totalTimeSpentWaitingForMemory;
+		totalTimeSpentInReadyQueue += other.totalTimeSpentInReadyQueue;
+		totalTimeSpentInCpu += other.totalTimeSpentInCpu;
+		totalTimeSpentWaitingForIo += other.totalTimeSpentWaitingForIo;
+		totalTimeSpentInIo += other.totalTimeSpentInIo;
+		totalNofTimesInReadyQueue += other.totalNofTimesInReadyQueue;
+		totalNofTimesInIoQueue += other.totalNofTimesInIoQueue;
+		memoryQueueLengthTime += other.memoryQueueLengthTime;
+		memoryQueueLargestLength = Math.max(memoryQueueLargestLength, other.memoryQueueLargestLength);
+		cpuQueueLengthTime += other.cpuQueueLengthTime;
+		cpuQueueLargestLength = Math.max(cpuQueueLargestLength, other.cpuQueueLargestLength);
+		ioQueueLengthTime += other.ioQueueLengthTime;
+		ioQueueLargestLength = Math.max(ioQueueLargestLength, other.ioQueueLargestLength);
+		nofProcessSwitches += other.nofProcessSwitches;
+		nofPreemptions += other.nofPreemptions;
+		nofMigrations += other.nofMigrations;
+		nofSteals += other.nofSteals;
+		nofBalancingMoves += other.nofBalancingMoves;
+		nofProcessedIoOperations += other.nofProcessedIoOperations;
+	}
+
+	/** The column names of the rows written by toCsvRow */
+	public static final String CSV_HEADER = "completed_processes,created_processes,process_switches,io_operations," +
+			"throughput,cpu_utilization,avg_memory_queue,max_memory_queue,avg_cpu_queue,max_cpu_queue," +
+			"avg_io_queue,max_io_queue,avg_time_in_system,preemptions,cores,migrations,steals,balancing_moves";
+
+	/**
+	 * Returns the average number of completed processes per second.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public double getThroughput(long simulationLength) {
+		return nofCompletedProcesses*1000.0/simulationLength;
+	}
+
+	/**
+	 * Returns the fraction of the time that the CPU cores were busy, averaged over
+	 * the cores, between 0 and 1.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public double getCpuUtilization(long simulationLength) {
+		return (double)totalBusyCpuTime/simulationLength/nofCores;
+	}
+
+	/**
+	 * Returns the fraction of the time that one CPU core was busy, between 0 and 1.
+	 * @param core				The index of the core.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public double getCoreUtilization(int core, long simulationLength) {
+		return (double)coreBusyTime[core]/simulationLength;
+	}
+
+	/**
+	 * Returns the time-weighted average length of the memory queue.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public double getAverageMemoryQueueLength(long simulationLength) {
+		return (double)memoryQueueLengthTime/simulationLength;
+	}
+
+	/**
+	 * Returns the time-weighted average length of the CPU queue.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public double getAverageCpuQueueLength(long simulationLength) {
+		return (double)cpuQueueLengthTime/simulationLength;
+	}
+
+	/**
+	 * Returns the time-weighted average length of the I/O queue.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public double getAverageIoQueueLength(long simulationLength) {
+		return (double)ioQueueLengthTime/simulationLength;
+	}
+
+	/**
+	 * Returns the average time spent in the system by the completed processes,
+	 * or NaN if no process has completed.
+	 */
+	public double getAverageTimeInSystem() {
+		if(nofCompletedProcesses == 0) {
+			return Double.NaN;
+		}
+		return (double)(totalTimeSpentWaitingForMemory+totalTimeSpentInReadyQueue+totalTimeSpentInCpu+
+				totalTimeSpentWaitingForIo+totalTimeSpentInIo)/nofCompletedProcesses;
+	}
+
+	/**
+	 * Returns the main results as a row of comma separated values, in the order given by CSV_HEADER.
+	 * @param simulationLength	The number of milliseconds that the simulation covered.
+	 */
+	public String toCsvRow(long simulationLength) {
+		double timeInSystem = getAverageTimeInSystem();
+		return nofCompletedProcesses+","+nofCreatedProcesses+","+nofProcessSwitches+","+nofProcessedIoOperations+","+
+				getThroughput(simulationLength)+","+getCpuUtilization(simulationLength)+","+
+				getAverageMemoryQueueLength(simulationLength)+","+memoryQueueLargestLength+","+
+				getAverageCpuQueueLength(simulationLength)+","+cpuQueueLargestLength+","+
+				getAverageIoQueueLength(simulationLength)+","+ioQueueLargestLength+","+
+				(Double.isNaN(timeInSystem) ? "" : String.valueOf(timeInSystem))+","+nofPreemptions+","+
+				nofCores+","+nofMigrations+","+nofSteals+","+nofBalancingMoves;
+	}
+
 	/**
 	 * Prints out a report summarizing all collected data about the simulation.
 	 * @param simulationLength	The number of milliseconds that the simulation covered.
@@ -57,16 +227,24 @@ public class Statistics
 		System.out.println();
 		System.out.println("Simulation statistics:");
 		System.out.println();
+		if(schedulingPolicy != null) {
+			System.out.println("Scheduling policy:                                            "+schedulingPolicy);
+		}
 		System.out.println("Number of completed processes:                                "+nofCompletedProcesses);
 		System.out.println("Number of created processes:                                  "+nofCreatedProcesses);
 		System.out.println("Number of (forced) process switches:                          "+nofProcessSwitches);
+		System.out.println("Number of preemptions:                                        "+nofPreemptions);
 		System.out.println("Number of processed I/O operations:                           "+nofProcessedIoOperations);
 		System.out.println("Average throughput (processes per second):                    "+(nofCompletedProcesses*1000.0f)/simulationLength);
 		System.out.println();
+		long cpuTime = simulationLength*nofCores;
 		System.out.println("Total CPU time spent processing:                              "+totalBusyCpuTime+" ms");
-		System.out.println("Fraction of CPU time spent processing:                        "+totalBusyCpuTime*100.0f/simulationLength+"%");
-		System.out.println("Total CPU time spent waiting:                                 "+(simulationLength-totalBusyCpuTime)+" ms");
-		System.out.println("Fraction of CPU time spent waiting:                           "+((simulationLength-totalBusyCpuTime)*100.0f/simulationLength)+"%");
+		System.out.println("Fraction of CPU time spent processing:                        "+totalBusyCpuTime*100.0f/cpuTime+"%");
+		System.out.println("Total CPU time spent waiting:                                 "+(cpuTime-totalBusyCpuTime)+" ms");
+		System.out.println("Fraction of CPU time spent waiting:                           "+((cpuTime-totalBusyCpuTime)*100.0f/cpuTime)+"%");
+		if(nofCores > 1) {
+			printCoreReport(simulationLength);
+		}
 		System.out.println();
 		System.out.println("Largest occuring memory queue length:                         "+memoryQueueLargestLength);
 		System.out.println("Average memory queue length:                                  "+(float)memoryQueueLengthTime/simulationLength);
@@ -94,4 +272,28 @@ public class Statistics
 					totalTimeSpentInIo/nofCompletedProcesses+" ms");
 		}
 	}
+
+	/**
+	 * Prints the load balancing counters and the utilization and run queue
+	 * lengths of every core.
+	 */
+	private void printCoreReport(long simulationLength) {
+		boolean ownQueues = loadBalancing != null && !loadBalancing.equals("global");
+		System.out.println();
+		System.out.println("Number of CPU cores:                                          "+nofCores);
+		if(loadBalancing != null) {
+			System.out.println("Load balancing:                                               "+loadBalancing);
+		}
+		System.out.println("Number of migrations between cores:                           "+nofMigrations);
+		System.out.println("Number of processes stolen by idle cores:                     "+nofSteals);
+		System.out.println("Number of processes moved by periodic balancing:              "+nofBalancingMoves);
+		for(int i = 0; i < nofCores; i++) {
+			String line = String.format("Core %-3d utilization %7.3f%%", i, coreBusyTime[i]*100.0f/simulationLength);
+			if(ownQueues) {
+				line += String.format(", average queue length %8.3f, largest %d",
+						(float)coreQueueLengthTime[i]/simulationLength, coreQueueLargestLength[i]);
+			}
+			System.out.println(line);
+		}
+	}
 }
@@ -0,0 +1,82 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.Iterator;
+
+/**
+ * A policy in the style of the Linux completely fair scheduler. Every process
+ * accumulates virtual run time while it uses the CPU, and the waiting process
+ * with the least virtual run time runs next. The ready queue is a heap keyed
+ * on virtual run time.
+ *
+ * The time slice is the target latency shared among the runnable processes,
+ * but never less than a minimum granularity. A process entering the ready
+ * queue has its virtual run time raised to at least the queue's minimum minus
+ * half the target latency, so processes returning from I/O get a small bonus
+ * without being able to monopolize the CPU. It preempts the running process
+ * if it is behind it by more than the minimum granularity.
+ */
+public class CompletelyFairPolicy extends SchedulingPolicy {
+    /** The waiting processes, keyed on virtual run time */
+    private final ProcessHeap heap = new ProcessHeap();
+    /** The period in which every runnable process should get to run */
+    private final long targetLatency;
+    /** The shortest time slice given */
+    private final long minGranularity;
+    /** The smallest virtual run time seen, never decreasing */
+    private long minVirtualRuntime;
+
+    /**
+     * @param targetLatency	The period in which every runnable process should get to run.
+     */
+    public CompletelyFairPolicy(long targetLatency) {
+        this.targetLatency = targetLatency;
+        this.minGranularity = Math.max(1, targetLatency/8);
+    }
+
+    public String getName() {
+        return "cfs";
+    }
+
+    public long getTimeSlice(Process p) {
+        // The process being switched in has left the heap, so it is counted separately
+        return Math.max(minGranularity, targetLatency/(heap.size()+1));
+    }
+
+    @Override
+    public boolean shouldPreempt(Process active, long activeRunTime, Process arrived) {
+        return arrived.getVirtualRuntime() + minGranularity < active.getVirtualRuntime() + activeRunTime;
+    }
+
+    @Override
+    public void processLeftCpu(Process p, long cpuTimeUsed, boolean sliceExpired) {
+        p.setVirtualRuntime(p.getVirtualRuntime() + cpuTimeUsed);
+    }
+
+    public boolean offer(Process p) {
+        p.setVirtualRuntime(Math.max(p.getVirtualRuntime(), minVirtualRuntime - targetLatency/2));
+        heap.add(p, p.getVirtualRuntime());
+        return true;
+    }
+
+    public Process poll() {
+        Process p = heap.poll();
+        if (p != null) {
+            minVirtualRuntime = Math.max(minVirtualRuntime, p.getVirtualRuntime());
+        }
+        return p;
+    }
+
+    public Process peek() {
+        return heap.peek();
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public Iterator<Process> iterator() {
+        return heap.iterator();
+    }
+}
@@ -0,0 +1,42 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * First come, first served: processes run in the order they entered the
+ * ready queue, until they need I/O or complete.
+ */
+public class FirstComeFirstServedPolicy extends SchedulingPolicy {
+    private final ArrayDeque<Process> queue = new ArrayDeque<>();
+
+    public String getName() {
+        return "fcfs";
+    }
+
+    public long getTimeSlice(Process p) {
+        return NO_TIME_SLICE;
+    }
+
+    public boolean offer(Process p) {
+        return queue.offer(p);
+    }
+
+    public Process poll() {
+        return queue.poll();
+    }
+
+    public Process peek() {
+        return queue.peek();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public Iterator<Process> iterator() {
+        return queue.iterator();
+    }
+}
@@ -0,0 +1,153 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Multilevel feedback queue: there is one round robin queue per priority
+ * level, and the quant doubles for every level down. New processes start at
+ * the top level. A process that uses its whole quant moves one level down, so
+ * CPU bound processes sink while processes doing frequent I/O stay on top.
+ * The first process of the highest non-empty level runs next, and a process
+ * entering a higher level than the running process preempts it.
+ *
+ * So that a steady stream of I/O bound processes can not starve the CPU bound
+ * ones at the bottom, every process is boosted back to the top level
+ * periodically: whenever the processes of this queue have used another
+ * boostInterval of CPU time, all waiting processes move to the top level, in
+ * the order they would have run, and so does the process leaving the CPU.
+ */
+public class MultilevelFeedbackQueuePolicy extends SchedulingPolicy {
+    /** The number of levels used by SchedulingPolicy.create */
+    public static final int DEFAULT_LEVELS = 3;
+    /** The CPU time between boosts used by SchedulingPolicy.create, in top level quants */
+    public static final int DEFAULT_BOOST_QUANTS = 20;
+
+    /** One queue per level, level 0 has the highest priority */
+    private final ArrayDeque<Process>[] levels;
+    /** The quant of the top level */
+    private final long quantum;
+    /** The CPU time used between two boosts */
+    private final long boostInterval;
+    /** The CPU time used since the last boost */
+    private long cpuTimeSinceBoost;
+    private int size;
+
+    /**
+     * @param quantum	The time quant of the top level.
+     * @param nofLevels	The number of priority levels.
+     */
+    public MultilevelFeedbackQueuePolicy(long quantum, int nofLevels) {
+        this(quantum, nofLevels, DEFAULT_BOOST_QUANTS*quantum);
+    }
+
+    /**
+     * @param quantum		The time quant of the top level.
+     * @param nofLevels		The number of priority levels.
+     * @param boostInterval	The CPU time used between two boosts to the top level.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MultilevelFeedbackQueuePolicy(long quantum, int nofLevels, long boostInterval) {
+        this.quantum = quantum;
+        this.boostInterval = boostInterval;
+        levels = new ArrayDeque[nofLevels];
+        for (int i = 0; i < nofLevels; i++) {
+            levels[i] = new ArrayDeque<>();
+        }
+    }
+
+    public String getName() {
+        return "mlfq";
+    }
+
+    public long getTimeSlice(Process p) {
+        return quantum << p.getSchedulingLevel();
+    }
+
+    @Override
+    public boolean shouldPreempt(Process active, long activeRunTime, Process arrived) {
+        return arrived.getSchedulingLevel() < active.getSchedulingLevel();
+    }
+
+    @Override
+    public void processLeftCpu(Process p, long cpuTimeUsed, boolean sliceExpired) {
+        if (sliceExpired && p.getSchedulingLevel() < levels.length-1) {
+            p.setSchedulingLevel(p.getSchedulingLevel()+1);
+        }
+        cpuTimeSinceBoost += cpuTimeUsed;
+        if (cpuTimeSinceBoost >= boostInterval) {
+            cpuTimeSinceBoost = 0;
+            boost();
+            p.setSchedulingLevel(0);
+        }
+    }
+
+    /**
+     * Moves all waiting processes to the top level, keeping the order they would run in.
+     */
+    private void boost() {
+        for (int i = 1; i < levels.length; i++) {
+            while (!levels[i].isEmpty()) {
+                Process p = levels[i].poll();
+                p.setSchedulingLevel(0);
+                levels[0].add(p);
+            }
+        }
+    }
+
+    public boolean offer(Process p) {
+        levels[p.getSchedulingLevel()].add(p);
+        size++;
+        return true;
+    }
+
+    public Process poll() {
+        for (ArrayDeque<Process> level : levels) {
+            if (!level.isEmpty()) {
+                size--;
+                return level.poll();
+            }
+        }
+        return null;
+    }
+
+    public Process peek() {
+        for (ArrayDeque<Process> level : levels) {
+            if (!level.isEmpty()) {
+                return level.peek();
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over the waiting processes in the order they will run.
+     */
+    public Iterator<Process> iterator() {
+        return new Iterator<Process>() {
+            private int level = 0;
+            private Iterator<Process> current = levels[0].iterator();
+
+            public boolean hasNext() {
+                while (!current.hasNext() && level < levels.length-1) {
+                    current = levels[++level].iterator();
+                }
+                return current.hasNext();
+            }
+
+            public Process next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
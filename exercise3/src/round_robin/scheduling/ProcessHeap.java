@@ -0,0 +1,119 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of processes ordered by a key given when the process is
+ * inserted. Processes with the same key leave the heap in the order they were
+ * inserted. Inserting and removing a process both take O(log n) time.
+ */
+class ProcessHeap implements Iterable<Process> {
+    private Process[] processes = new Process[16];
+    private long[] keys = new long[16];
+    private long[] sequence = new long[16];
+    private int size;
+    private long nextSequence;
+
+    void add(Process p, long key) {
+        if (size == processes.length) {
+            processes = Arrays.copyOf(processes, 2*size);
+            keys = Arrays.copyOf(keys, 2*size);
+            sequence = Arrays.copyOf(sequence, 2*size);
+        }
+        long s = nextSequence++;
+        int index = size++;
+        while (index > 0) {
+            int parent = (index-1) >>> 1;
+            if (!before(key, s, parent)) {
+                break;
+            }
+            move(parent, index);
+            index = parent;
+        }
+        set(index, p, key, s);
+    }
+
+    Process peek() {
+        return size == 0 ? null : processes[0];
+    }
+
+    Process poll() {
+        if (size == 0) {
+            return null;
+        }
+        Process first = processes[0];
+        size--;
+        Process last = processes[size];
+        long lastKey = keys[size];
+        long lastSequence = sequence[size];
+        processes[size] = null;
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2*index+1;
+            int right = child+1;
+            if (right < size && before(keys[right], sequence[right], child)) {
+                child = right;
+            }
+            if (before(lastKey, lastSequence, child)) {
+                break;
+            }
+            move(child, index);
+            index = child;
+        }
+        if (size > 0) {
+            set(index, last, lastKey, lastSequence);
+        }
+        return first;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over the processes in heap order, which is not sorted.
+     */
+    @Override
+    public Iterator<Process> iterator() {
+        return new Iterator<Process>() {
+            private int index = 0;
+            private final Process[] snapshot = processes;
+            private final int end = size;
+
+            public boolean hasNext() {
+                return index < end && index < snapshot.length && snapshot[index] != null;
+            }
+
+            public Process next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[index++];
+            }
+        };
+    }
+
+    private boolean before(long key, long s, int index) {
+        if (key != keys[index]) {
+            return key < keys[index];
+        }
+        return s < sequence[index];
+    }
+
+    private void move(int from, int to) {
+        processes[to] = processes[from];
+        keys[to] = keys[from];
+        sequence[to] = sequence[from];
+    }
+
+    private void set(int index, Process p, long key, long s) {
+        processes[index] = p;
+        keys[index] = key;
+        sequence[index] = s;
+    }
+}
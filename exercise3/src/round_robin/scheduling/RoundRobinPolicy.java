@@ -0,0 +1,52 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Round robin: processes run in the order they entered the ready queue, but
+ * for at most one time quant at a time. A process that uses its whole quant
+ * goes to the back of the queue.
+ */
+public class RoundRobinPolicy extends SchedulingPolicy {
+    private final ArrayDeque<Process> queue = new ArrayDeque<>();
+    /** The time quant */
+    private final long quantum;
+
+    /**
+     * @param quantum	The longest time a process may run before it is switched out.
+     */
+    public RoundRobinPolicy(long quantum) {
+        this.quantum = quantum;
+    }
+
+    public String getName() {
+        return "rr";
+    }
+
+    public long getTimeSlice(Process p) {
+        return quantum;
+    }
+
+    public boolean offer(Process p) {
+        return queue.offer(p);
+    }
+
+    public Process poll() {
+        return queue.poll();
+    }
+
+    public Process peek() {
+        return queue.peek();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public Iterator<Process> iterator() {
+        return queue.iterator();
+    }
+}
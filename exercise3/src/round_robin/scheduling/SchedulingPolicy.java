@@ -0,0 +1,81 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.AbstractQueue;
+
+/**
+ * A CPU scheduling policy. The policy is the ready queue of the CPU: processes
+ * waiting for the CPU are offered to it, and the CPU polls it for the next
+ * process to run. In addition the policy decides how long a process may run
+ * before it is switched out, and whether a process entering the ready queue
+ * should preempt the running process.
+ *
+ * Iterating over a policy visits the waiting processes, in no particular
+ * order unless the policy says otherwise. It is used by the GUI.
+ */
+public abstract class SchedulingPolicy extends AbstractQueue<Process> {
+    /** Time slice of policies that let a process run until it blocks or completes */
+    public static final long NO_TIME_SLICE = Long.MAX_VALUE;
+
+    /** The names accepted by create */
+    public static final String[] NAMES = {"fcfs", "rr", "sjf", "srt", "mlfq", "cfs"};
+
+    /**
+     * Creates the policy with the given name.
+     * @param name		One of NAMES.
+     * @param quantum	The time quant of the policies that use one.
+     * @return			The new policy.
+     * @throws IllegalArgumentException	If there is no policy with that name.
+     */
+    public static SchedulingPolicy create(String name, long quantum) {
+        switch (name) {
+            case "fcfs": return new FirstComeFirstServedPolicy();
+            case "rr": return new RoundRobinPolicy(quantum);
+            case "sjf": return new ShortestJobFirstPolicy();
+            case "srt": return new ShortestRemainingTimePolicy();
+            case "mlfq": return new MultilevelFeedbackQueuePolicy(quantum, MultilevelFeedbackQueuePolicy.DEFAULT_LEVELS);
+            case "cfs": return new CompletelyFairPolicy(quantum);
+            default: throw new IllegalArgumentException("Unknown scheduling policy " + name);
+        }
+    }
+
+    /**
+     * Returns the short name of this policy, as accepted by create.
+     */
+    public abstract String getName();
+
+    /**
+     * Returns the longest time the given process may use the CPU before it is
+     * switched out, or NO_TIME_SLICE. Called when the process is switched in.
+     * @param p	The process being switched in.
+     */
+    public abstract long getTimeSlice(Process p);
+
+    /**
+     * Checks whether a process entering the ready queue should preempt the
+     * running process. The arriving process has already been offered to the
+     * policy when this is called.
+     * @param active			The process using the CPU.
+     * @param activeRunTime		How long the active process has run since it was switched in.
+     * @param arrived			The process that entered the ready queue.
+     * @return					Whether the active process should be switched out.
+     */
+    public boolean shouldPreempt(Process active, long activeRunTime, Process arrived) {
+        return false;
+    }
+
+    /**
+     * Called when a process leaves the CPU, for any reason.
+     * @param p				The process leaving the CPU.
+     * @param cpuTimeUsed	How long the process ran since it was switched in.
+     * @param sliceExpired	Whether the process used all of its time slice.
+     */
+    public void processLeftCpu(Process p, long cpuTimeUsed, boolean sliceExpired) {
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,45 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+import java.util.Iterator;
+
+/**
+ * Shortest job first: the waiting process with the least CPU time left runs
+ * next, until it needs I/O or completes. Processes needing the same time run
+ * in the order they entered the ready queue. The ready queue is a heap.
+ */
+public class ShortestJobFirstPolicy extends SchedulingPolicy {
+    /** The waiting processes, keyed on the CPU time they still need */
+    private final ProcessHeap heap = new ProcessHeap();
+
+    public String getName() {
+        return "sjf";
+    }
+
+    public long getTimeSlice(Process p) {
+        return NO_TIME_SLICE;
+    }
+
+    public boolean offer(Process p) {
+        // A waiting process does not run, so its key stays valid while it waits
+        heap.add(p, p.getCpuTimeNeeded());
+        return true;
+    }
+
+    public Process poll() {
+        return heap.poll();
+    }
+
+    public Process peek() {
+        return heap.peek();
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public Iterator<Process> iterator() {
+        return heap.iterator();
+    }
+}
@@ -0,0 +1,20 @@
+package round_robin.scheduling;
+
+import round_robin.Process;
+
+/**
+ * Shortest remaining time: like shortest job first, but a process entering
+ * the ready queue preempts the running process if it needs less CPU time
+ * than the running process has left.
+ */
+public class ShortestRemainingTimePolicy extends ShortestJobFirstPolicy {
+    @Override
+    public String getName() {
+        return "srt";
+    }
+
+    @Override
+    public boolean shouldPreempt(Process active, long activeRunTime, Process arrived) {
+        return arrived.getCpuTimeNeeded() < active.getCpuTimeNeeded() - activeRunTime;
+    }
+}